@@ -0,0 +1,59 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.view.View;
+
+/**
+ * Scrolls the body within the same animation as the header, see
+ * {@link HeaderCollapsibleLayout#smoothChangeTo(int, BodyScroller, OnCoordinatedScrollListener)}.
+ * <p>
+ * Use {@link #scrollBy(View, int)} or {@link #scrollTo(View, int)} for a scrolling view body, such as a
+ * NestedScrollView, and {@link RecyclerViewBodyScroller} to bring an adapter position into view.
+ */
+public abstract class BodyScroller {
+
+    /**
+     * Called once, right before the first frame of the animation.
+     *
+     * @return the distance in px the body scrolls by over the whole animation
+     */
+    protected abstract int computeScrollDistance();
+
+    /**
+     * Called at most once per frame with the part of the distance for that frame.
+     */
+    protected abstract void scrollBodyBy(int dy);
+
+    /**
+     * @return a scroller moving the body by the given distance
+     */
+    public static BodyScroller scrollBy(final View body, final int dy) {
+        return new BodyScroller() {
+            @Override
+            protected int computeScrollDistance() {
+                return dy;
+            }
+
+            @Override
+            protected void scrollBodyBy(int frameDy) {
+                body.scrollBy(0, frameDy);
+            }
+        };
+    }
+
+    /**
+     * @return a scroller moving the body to the given scroll offset
+     */
+    public static BodyScroller scrollTo(final View body, final int scrollY) {
+        return new BodyScroller() {
+            @Override
+            protected int computeScrollDistance() {
+                return scrollY - body.getScrollY();
+            }
+
+            @Override
+            protected void scrollBodyBy(int frameDy) {
+                body.scrollBy(0, frameDy);
+            }
+        };
+    }
+}
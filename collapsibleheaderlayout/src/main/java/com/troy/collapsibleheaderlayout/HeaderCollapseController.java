@@ -0,0 +1,3067 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.animation.Animator;
+import android.animation.Animator.AnimatorListener;
+import android.animation.ObjectAnimator;
+import android.animation.ValueAnimator;
+import android.animation.ValueAnimator.AnimatorUpdateListener;
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.TypedArray;
+import android.graphics.Rect;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.IdRes;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+import android.support.v4.view.ViewCompat;
+import android.util.SparseIntArray;
+import android.view.View;
+import android.view.View.OnLayoutChangeListener;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewStub;
+import android.view.ViewTreeObserver;
+import android.view.animation.DecelerateInterpolator;
+
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.troy.collapsibleheaderlayout.HeaderCollapsibleLayout.CHAIN_PARENT_FIRST;
+import static com.troy.collapsibleheaderlayout.HeaderCollapsibleLayout.CHAIN_SPLIT;
+import static com.troy.collapsibleheaderlayout.HeaderCollapsibleLayout.COLLAPSED;
+import static com.troy.collapsibleheaderlayout.HeaderCollapsibleLayout.COLLAPSING;
+import static com.troy.collapsibleheaderlayout.HeaderCollapsibleLayout.CULLING_DRAW;
+import static com.troy.collapsibleheaderlayout.HeaderCollapsibleLayout.CULLING_NONE;
+import static com.troy.collapsibleheaderlayout.HeaderCollapsibleLayout.EXPANDED;
+import static com.troy.collapsibleheaderlayout.HeaderCollapsibleLayout.EXPANDING;
+
+/**
+ * The collapse engine behind {@link HeaderCollapsibleLayout} and {@link HeaderCollapsibleBehavior}.
+ * <p>
+ * It drives the height of the header view from the nested scroll events of the body, and owns the header
+ * status, the pinned sections, the stages and the listeners. The host only forwards the nested scroll
+ * and layout events, and decides where the body goes.
+ */
+public final class HeaderCollapseController {
+
+    /*
+     * What the controller needs from the view it lives in.
+     */
+    interface Host {
+        /*
+         * The view posting the deferred work, and scrolled for the overshoot action when the header is empty.
+         */
+        View getHostView();
+
+        boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow);
+
+        boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed,
+                                     int[] offsetInWindow);
+
+        boolean dispatchNestedPreFling(float velocityX, float velocityY);
+
+        void onHeaderFirstLayout();
+    }
+
+    private final Host mHost;
+
+    boolean mIsEnabled = true;
+    boolean mIsScrollingDown;
+    boolean mIsBeingDragged;
+    @HeaderCollapsibleLayout.HeaderStatus
+    int mCurHeaderStatus = EXPANDED;
+
+    private List<OnHeaderStatusChangedListener> mHeaderStatusChangedListeners;
+    private List<WeakReference<OnHeaderStatusChangedListener>> mWeakHeaderStatusChangedListeners;
+    private List<LifecycleBoundListener> mLifecycleBoundListeners;
+    private OnHeaderStatusChangedListener mSingleHeaderStatusChangedListener;
+    private int mOrgHeaderHeight = -1;
+    private int mOrgHeaderHeightBackup = -1;
+    private int mStickyFooterLayoutId = -1;
+    private int mStickyFooterHeight = 0;
+    private int[] mPinnedSectionIds;
+    private final List<PinnedSection> mPinnedSections = new ArrayList<>();
+    private int mPinnedSectionsHeight;  // Sum of the pinned section heights, kept up to date incrementally
+    private int[] mStageIds;
+    private final List<CollapsibleStage> mStages = new ArrayList<>();
+    private List<OnStageChangedListener> mStageChangedListeners;
+    private final List<HeaderEffect> mEffects = new ArrayList<>();
+    private final List<HeaderEffect> mBoundEffects = new ArrayList<>();
+    private int mOvershootDistance;
+    private int mHeaderLayoutHeight;  // The header layout height before the first layout, wrap_content usually
+    private boolean mHasPendingBind;
+    private int mPendingBindOffset;
+    @HeaderCollapsibleLayout.HeaderStatus
+    private int mPendingBindStatus;
+    private float mExactHeaderHeight;
+    private float mOvershootScrollRemainder;
+    private int[] mSnapAnchors = new int[0];
+    private int[] mResolvedAnchors;
+    private int mResolvedStickyHeight;
+    private int mResolvedOrgHeight;
+    private List<OnAnchorReachedListener> mAnchorReachedListeners;
+    private boolean mSupportFlingAction;
+    private boolean mAutoDrawerModeEnabled = true;
+    private boolean mQuickReturnEnabled;
+    private boolean mTallHeaderEnabled;
+    private int mHeaderScrollRange;  // The part of a tall header below the host height, scrolled through first
+    private int mHeaderScroll;  // The host scroll, within the range above
+    private int mAvailableHeight;
+    private boolean mDefaultExpand = true;
+    private int mLazyHeaderStubId = View.NO_ID;
+    private int mLazyHeaderHeight;
+    private boolean mLazyHeaderPrefetch = true;
+    private ViewStub mLazyHeaderStub;  // Until inflated
+    private HeaderResourceHook mResourceHook;
+    private long mReleaseTimeoutMillis = -1;
+    private boolean mResourcesReleased;
+    private Context mTrimMemoryContext;  // Set while the trim memory callbacks are registered
+    @HeaderCollapsibleLayout.ChainingPolicy
+    private int mChainingPolicy = CHAIN_PARENT_FIRST;
+    private final int[] mParentScrollConsumed = new int[2];
+    private final int[] mParentOffsetInWindow = new int[2];
+    @HeaderCollapsibleLayout.CullingMode
+    private int mCullingMode = CULLING_NONE;
+    private boolean mHeaderCulled;
+    private boolean mCullPending;
+    private final List<View> mCulledViews = new ArrayList<>();
+    private final Rect mCullRect = new Rect();
+    private HeaderCollapsibleLayout.OnRefreshListener mRefreshListener;
+    private int mRefreshTriggerDistance;
+    private int mRefreshHoldDistance;
+    private boolean mRefreshing;
+    private View mTopView;
+    private HeaderCollapseState mSharedState;
+    private int mAppliedStateVersion;
+    private boolean mAdoptingSharedState;
+    private View mObservedHost;
+    private final Rect mVisibleRect = new Rect();
+
+    private final List<Animator> mRunningAnimators = new ArrayList<>();
+    private Animator mBounceBackForOvershooting;
+    private Animator mPredictingAnimator;
+    private Animator mCoordinatedScroll;
+    private int mPredictedHeaderHeight = -1;
+    private OnHeaderPredictionListener mPredictionListener;
+    private HeaderTransitionLog mTransitionLog;
+    private HeaderListenerProfiler mListenerProfiler;
+    private HeaderDebugHud mDebugHud;
+    private HeaderVirtualClock mAnimationClock;
+    private List<Runnable> mIdleObservers;
+    private boolean mImeSyncEnabled;
+    private boolean mCollapsedForIme;
+    private int mImeSyncLastWidth;
+    private int mImeSyncLastHeight;
+    private int lastHeaderHeight;  // Record of header height each time before it changes
+
+    private float lastVelocityY = -0.1F;
+    private int unconsumedDy;
+    private final float touchSlop;
+
+    HeaderCollapseController(Context context, Host host) {
+        mHost = host;
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+    }
+
+    /*
+     * Read the collapse related attributes of the HeaderCollapsibleLayout styleable, shared by both forms.
+     */
+    void readAttributes(Context context, TypedArray a) {
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_overlayFooterId)) {
+            mStickyFooterLayoutId = a.getResourceId(R.styleable.HeaderCollapsibleLayout_overlayFooterId, -1);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_pinnedSectionIds)) {
+            mPinnedSectionIds = readIdArray(context, a.getResourceId(R.styleable.HeaderCollapsibleLayout_pinnedSectionIds, 0));
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_collapsibleStageIds)) {
+            mStageIds = readIdArray(context, a.getResourceId(R.styleable.HeaderCollapsibleLayout_collapsibleStageIds, 0));
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_headerEffects)) {
+            int xmlRes = a.getResourceId(R.styleable.HeaderCollapsibleLayout_headerEffects, 0);
+            if (xmlRes != 0) {
+                mEffects.addAll(HeaderEffect.inflate(context, xmlRes));
+            }
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_snapAnchors)) {
+            int arrayRes = a.getResourceId(R.styleable.HeaderCollapsibleLayout_snapAnchors, 0);
+            if (arrayRes != 0) {
+                TypedArray array = context.getResources().obtainTypedArray(arrayRes);
+                int[] anchors = new int[array.length()];
+                for (int index = 0; index < anchors.length; index++) {
+                    anchors[index] = array.getDimensionPixelSize(index, 0);
+                }
+                array.recycle();
+                setSnapAnchors(anchors);
+            }
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_supportFlingAction)) {
+            mSupportFlingAction = a.getBoolean(R.styleable.HeaderCollapsibleLayout_supportFlingAction, false);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_autoDrawerModeEnabled)) {
+            mAutoDrawerModeEnabled = a.getBoolean(R.styleable.HeaderCollapsibleLayout_autoDrawerModeEnabled, true);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_quickReturnEnabled)) {
+            mQuickReturnEnabled = a.getBoolean(R.styleable.HeaderCollapsibleLayout_quickReturnEnabled, false);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_tallHeaderEnabled)) {
+            mTallHeaderEnabled = a.getBoolean(R.styleable.HeaderCollapsibleLayout_tallHeaderEnabled, false);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_defaultExpand)) {
+            mDefaultExpand = a.getBoolean(R.styleable.HeaderCollapsibleLayout_defaultExpand, true);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_lazyHeaderStubId)) {
+            mLazyHeaderStubId = a.getResourceId(R.styleable.HeaderCollapsibleLayout_lazyHeaderStubId, View.NO_ID);
+            mLazyHeaderHeight = a.getDimensionPixelSize(R.styleable.HeaderCollapsibleLayout_lazyHeaderHeight, 0);
+            mLazyHeaderPrefetch = a.getBoolean(R.styleable.HeaderCollapsibleLayout_lazyHeaderPrefetch, true);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_overshootDistance)) {
+            mOvershootDistance = a.getInteger(R.styleable.HeaderCollapsibleLayout_overshootDistance, 0);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_refreshTriggerDistance)) {
+            mRefreshTriggerDistance = a.getDimensionPixelSize(R.styleable.HeaderCollapsibleLayout_refreshTriggerDistance, 0);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_refreshHoldDistance)) {
+            mRefreshHoldDistance = a.getDimensionPixelSize(R.styleable.HeaderCollapsibleLayout_refreshHoldDistance, 0);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_nestedScrollChaining)) {
+            //noinspection WrongConstant
+            mChainingPolicy = a.getInt(R.styleable.HeaderCollapsibleLayout_nestedScrollChaining, CHAIN_PARENT_FIRST);
+        }
+
+        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_collapsedHeaderCulling)) {
+            //noinspection WrongConstant
+            mCullingMode = a.getInt(R.styleable.HeaderCollapsibleLayout_collapsedHeaderCulling, CULLING_NONE);
+        }
+    }
+
+    /*
+     * The full heights measured per lazy header layout, shared by all the instances within the process.
+     */
+    private static final SparseIntArray sLazyHeaderHeights = new SparseIntArray();
+
+    @Nullable
+    private static int[] readIdArray(Context context, int arrayRes) {
+        if (arrayRes == 0) {
+            return null;
+        }
+
+        TypedArray array = context.getResources().obtainTypedArray(arrayRes);
+        int[] ids = new int[array.length()];
+        for (int index = 0; index < ids.length; index++) {
+            ids[index] = array.getResourceId(index, View.NO_ID);
+        }
+        array.recycle();
+
+        return ids;
+    }
+
+    void setHeaderView(View header) {
+        mTopView = header;
+    }
+
+    View getHeaderView() {
+        return mTopView;
+    }
+
+    boolean isFirstLayoutDone() {
+        return mOrgHeaderHeight != -1;
+    }
+
+    /*
+     * Called by the host after a layout pass, once the header has been measured.
+     */
+    void onHeaderLaidOut() {
+        if (mOrgHeaderHeight != -1) {
+            return;
+        }
+
+        if (mTopView == null || mTopView.getMeasuredHeight() == 0) {
+            return;
+        }
+
+        final boolean traced = HeaderTrace.beginSection(HeaderTrace.SECTION_FIRST_LAYOUT);
+        try {
+            performFirstLayout();
+        } finally {
+            HeaderTrace.endSection(traced);
+        }
+    }
+
+    private void performFirstLayout() {
+        mHeaderLayoutHeight = mTopView.getLayoutParams().height;
+        mOrgHeaderHeight = mTopView.getMeasuredHeight();
+        if (findLazyHeaderStub() != null) {
+            // Only the light part of the header has been measured, go with the expected full height
+            mOrgHeaderHeight = Math.max(mOrgHeaderHeight, getExpectedLazyHeaderHeight());
+        }
+        if (supportsTallHeader()) {
+            // The host offered no more than its own height, the rest of the content is only measured here, once
+            mTopView.measure(View.MeasureSpec.makeMeasureSpec(mTopView.getMeasuredWidth(), View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+            mOrgHeaderHeight = Math.max(mOrgHeaderHeight, mTopView.getMeasuredHeight());
+        }
+        if (mOvershootDistance < 0) {
+            mOvershootDistance = 0;
+        } else if (mOvershootDistance > (Integer.MAX_VALUE - mHost.getHostView().getHeight())) {
+            mHost.getHostView().getHeight();
+        }
+
+        if (mPinnedSectionIds != null) {
+            for (int order = 0; order < mPinnedSectionIds.length; order++) {
+                View section = mTopView.findViewById(mPinnedSectionIds[order]);
+                if (section != null) {
+                    addPinnedSection(section, order);
+                }
+            }
+        }
+
+        if (mStickyFooterLayoutId != -1) {
+            View overlayFooter = mTopView.findViewById(mStickyFooterLayoutId);
+
+            if (overlayFooter != null && findPinnedSection(overlayFooter) == null) {
+                // The overlay footer always stays at the very bottom of the pinned sections
+                addPinnedSection(overlayFooter, Integer.MAX_VALUE);
+            }
+        }
+        mStickyFooterHeight = Math.min(mOrgHeaderHeight, mPinnedSectionsHeight);
+
+        for (int index = 0; index < mStages.size(); index++) {
+            // Stages added before the first layout did not know their heights yet
+            mStages.get(index).height = mStages.get(index).view.getHeight();
+        }
+        if (mStageIds != null) {
+            for (int stageId : mStageIds) {
+                View stage = mTopView.findViewById(stageId);
+                if (stage != null) {
+                    addCollapsibleStage(stage);
+                }
+            }
+        }
+
+        mOrgHeaderHeightBackup = mOrgHeaderHeight;
+
+        updateHeaderScrollRange();
+        if (mHeaderScrollRange > 0) {
+            // Laid out at its full height from now on, instead of within the host height
+            applyHeaderHeight(mOrgHeaderHeight);
+        }
+
+        for (int index = 0; index < mEffects.size(); index++) {
+            bindHeaderEffect(mEffects.get(index));
+        }
+        applyHeaderEffects(getPendingHeaderHeight());
+
+        mHost.onHeaderFirstLayout();
+
+        mHost.getHostView().requestLayout();
+
+        if (mHasPendingBind) {
+            mHasPendingBind = false;
+            applyBoundState(mPendingBindOffset, mPendingBindStatus, true);
+        } else if (!adoptSharedState(false) && !mDefaultExpand) {
+            collapse();
+        }
+
+        if (mLazyHeaderStub != null && mLazyHeaderPrefetch) {
+            Looper.myQueue().addIdleHandler(mLazyHeaderPrefetcher);
+        }
+    }
+
+    /*
+     * Called by the host right before the header is measured.
+     *
+     * @param availableWidth  the width offered to the host, in px
+     * @param availableHeight the height offered to the host, in px
+     */
+    void onHostMeasure(int availableWidth, int availableHeight) {
+        mAvailableHeight = availableHeight;
+        if (isFirstLayoutDone()) {
+            final int height = getPendingHeaderHeight();
+            if (updateHeaderScrollRange()) {
+                // Rotated, the same visible height maps to another split between scrolling and collapsing
+                applyHeaderHeight(height, false);
+            }
+        }
+
+        if (!isFirstLayoutDone() && mDefaultExpand && findLazyHeaderStub() != null) {
+            // Starting expanded, there is nothing to defer
+            inflateLazyHeader();
+        }
+
+        // An offscreen header being laid out again takes the shared state within the same pass
+        adoptSharedState(true);
+
+        if (mImeSyncEnabled) {
+            syncWithIme(availableWidth, availableHeight);
+        }
+    }
+
+    /*
+     * A window resized for the soft keyboard is measured again in one pass, the header follows within that same
+     * pass, so the keyboard and the collapse cost a single layout. Only a height change with the same width counts,
+     * a rotation is not the keyboard. A shrink without a text editor focused is not the keyboard either, but a
+     * multi-window resize or a system bar showing up.
+     */
+    private void syncWithIme(int availableWidth, int availableHeight) {
+        final int lastWidth = mImeSyncLastWidth;
+        final int lastHeight = mImeSyncLastHeight;
+        mImeSyncLastWidth = availableWidth;
+        mImeSyncLastHeight = availableHeight;
+        if (lastHeight <= 0 || availableWidth != lastWidth || !isFirstLayoutDone() || mIsBeingDragged) {
+            return;
+        }
+
+        final int threshold = lastHeight / 5;
+        final int desHeight;
+        @HeaderCollapsibleLayout.HeaderStatus final int status;
+        if (lastHeight - availableHeight > threshold && mCurHeaderStatus != COLLAPSED && isEditorFocused()) {
+            mCollapsedForIme = true;
+            desHeight = mStickyFooterHeight;
+            status = COLLAPSED;
+        } else if (availableHeight - lastHeight > threshold && mCollapsedForIme) {
+            mCollapsedForIme = false;
+            desHeight = mOrgHeaderHeight;
+            status = EXPANDED;
+        } else {
+            return;
+        }
+
+        // Whatever was animating the header would fight the keyboard
+        while (!mRunningAnimators.isEmpty()) {
+            mRunningAnimators.remove(mRunningAnimators.size() - 1).cancel();
+        }
+
+        applyHeaderHeight(desHeight, false);
+        setHeaderStatus(status, HeaderTransitionLog.CAUSE_IME);
+        if (mIsEnabled) {
+            dispatchHeaderOffsetChanged(desHeight);
+        }
+        notifyIfIdle();
+    }
+
+    /*
+     * The soft keyboard only shows up for the view holding the focus in the window, which may be outside the host.
+     */
+    private boolean isEditorFocused() {
+        final View focused = mHost.getHostView().getRootView().findFocus();
+        return focused != null && focused.onCheckIsTextEditor();
+    }
+
+    /*
+     * Called by the host within each layout pass, right after the header has been laid out.
+     */
+    void onHostLayout() {
+        if (mSharedState != null && mObservedHost != mHost.getHostView()) {
+            observeHost();
+        }
+
+        if (mTopView != null && !mPinnedSections.isEmpty()) {
+            applyPinnedSectionOffsets();
+        }
+
+        if (mCullingMode != CULLING_NONE && !mHeaderCulled && !mCullPending && isHeaderFullyCollapsed()) {
+            // Visibility changes are not welcome within a layout pass, do it right after
+            mCullPending = true;
+            mHost.getHostView().post(mCullHeaderRunnable);
+        }
+
+        if (mResourceHook != null && mTrimMemoryContext == null) {
+            // Laid out again after being attached
+            mTrimMemoryContext = mHost.getHostView().getContext().getApplicationContext();
+            mTrimMemoryContext.registerComponentCallbacks(mTrimMemoryCallbacks);
+        }
+    }
+
+    private final Runnable mCullHeaderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCullPending = false;
+            if (mCullingMode != CULLING_NONE && !mHeaderCulled && isHeaderFullyCollapsed()) {
+                cullHeader();
+            }
+        }
+    };
+
+    /*
+     * The host view is only known after the first layout in the behavior form.
+     */
+    private void requestHostLayout() {
+        if (mHost.getHostView() != null) {
+            mHost.getHostView().requestLayout();
+        }
+    }
+
+    private static final class PinnedSection {
+        final View view;
+        final int order;
+        int height;
+
+        PinnedSection(View view, int order) {
+            this.view = view;
+            this.order = order;
+        }
+    }
+
+    private final OnLayoutChangeListener mPinnedSectionLayoutListener = new OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            PinnedSection section = findPinnedSection(v);
+            if (section == null || section.height == bottom - top) {
+                return;
+            }
+
+            mPinnedSectionsHeight += (bottom - top) - section.height;
+            section.height = bottom - top;
+            onPinnedSectionsHeightChanged();
+        }
+    };
+
+    private final Runnable mApplyStickyFooterHeightRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mTopView == null || mOrgHeaderHeight <= 0) {
+                return;
+            }
+
+            // Keep a collapsed header collapsed to the new sticky height, and never let the header get below it
+            int headerHeight = getPendingHeaderHeight();
+            if (mCurHeaderStatus == COLLAPSED || headerHeight < mStickyFooterHeight) {
+                if (headerHeight != mStickyFooterHeight) {
+                    applyHeaderHeight(mStickyFooterHeight);
+                }
+            }
+        }
+    };
+
+    @Nullable
+    private PinnedSection findPinnedSection(View view) {
+        for (int index = 0; index < mPinnedSections.size(); index++) {
+            if (mPinnedSections.get(index).view == view) {
+                return mPinnedSections.get(index);
+            }
+        }
+
+        return null;
+    }
+
+    private void onPinnedSectionsHeightChanged() {
+        if (mOrgHeaderHeightBackup == -1) {
+            return;  // Will be picked up by the first layout
+        }
+
+        int stickyFooterHeight = Math.min(mOrgHeaderHeightBackup, mPinnedSectionsHeight);
+        if (stickyFooterHeight == mStickyFooterHeight) {
+            return;
+        }
+
+        mStickyFooterHeight = stickyFooterHeight;
+        // This is usually called within a layout pass, so apply the new height right after it
+        final View host = mHost.getHostView();
+        if (host != null) {
+            host.removeCallbacks(mApplyStickyFooterHeightRunnable);
+            host.post(mApplyStickyFooterHeightRunnable);
+        }
+    }
+
+    /*
+     * Stack the pinned sections at the bottom of the visible part of the header in pin order, by translating the
+     * ones which would be clipped otherwise. This never relayouts the header.
+     */
+    private void applyPinnedSectionOffsets() {
+        int bottomLimit = mTopView.getHeight();
+        for (int index = mPinnedSections.size() - 1; index >= 0; index--) {
+            PinnedSection section = mPinnedSections.get(index);
+            if (section.view.getVisibility() == View.GONE) {
+                continue;
+            }
+
+            int naturalTop = getTopInHeader(section.view);
+            float translation = Math.min(0, bottomLimit - (naturalTop + section.height));
+            if (section.view.getTranslationY() != translation) {
+                section.view.setTranslationY(translation);
+            }
+            bottomLimit = naturalTop + (int) translation;
+        }
+    }
+
+    private int getTopInHeader(View view) {
+        int top = view.getTop();
+        ViewParent parent = view.getParent();
+        while (parent instanceof View && parent != mTopView) {
+            top += ((View) parent).getTop() - ((View) parent).getScrollY();
+            parent = parent.getParent();
+        }
+
+        return top;
+    }
+
+    private static final class CollapsibleStage {
+        final View view;
+        int height;
+        int offset;
+        @HeaderCollapsibleLayout.HeaderStatus
+        int status = EXPANDED;
+
+        CollapsibleStage(View view) {
+            this.view = view;
+        }
+    }
+
+    /*
+     * Effects whose target is not in the header are kept, but never applied.
+     */
+    private void bindHeaderEffect(HeaderEffect effect) {
+        if (effect.bind(mTopView)) {
+            mBoundEffects.add(effect);
+        }
+    }
+
+    private void applyHeaderEffects(int headerHeight) {
+        final int collapseDistance = mOrgHeaderHeight - mStickyFooterHeight;
+        final float collapsedFraction = collapseDistance <= 0 ? 0F
+                : Math.max(0F, Math.min(1F, (float) (mOrgHeaderHeight - headerHeight) / collapseDistance));
+        for (int index = 0; index < mBoundEffects.size(); index++) {
+            mBoundEffects.get(index).apply(collapsedFraction, collapseDistance);
+        }
+    }
+
+    /*
+     * Distribute the collapsed offset of the whole header across the stages in a single pass: a stage only starts
+     * collapsing once all the stages before it have been fully collapsed. Each stage is moved up by offset, so all the
+     * stages together still cost a single layout per frame.
+     */
+    private void applyStageOffsets(int headerHeight) {
+        int remaining = Math.max(0, mOrgHeaderHeight - headerHeight);
+        int translation = 0;
+        for (int index = 0; index < mStages.size(); index++) {
+            CollapsibleStage stage = mStages.get(index);
+            int offset = Math.min(remaining, stage.height);
+            remaining -= offset;
+            translation -= offset;
+
+            if (stage.view.getTranslationY() != translation) {
+                stage.view.setTranslationY(translation);
+            }
+
+            if (offset == stage.offset) {
+                continue;
+            }
+
+            int status;
+            if (offset == 0) {
+                status = EXPANDED;
+            } else if (offset == stage.height) {
+                status = COLLAPSED;
+            } else {
+                status = offset > stage.offset ? COLLAPSING : EXPANDING;
+            }
+            stage.offset = offset;
+
+            if (mStageChangedListeners == null) {
+                stage.status = status;
+                continue;
+            }
+
+            for (int l = 0; l < mStageChangedListeners.size(); l++) {
+                mStageChangedListeners.get(l).onStageOffsetChanged(index, offset, stage.height,
+                        stage.height > 0 ? (offset * 1.0f) / stage.height : 0F);
+            }
+
+            if (status != stage.status) {
+                stage.status = status;
+                for (int l = 0; l < mStageChangedListeners.size(); l++) {
+                    mStageChangedListeners.get(l).onStageStatusChanged(index, status);
+                }
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // ▼ Public methods starts
+    ///////////////////////////////////////////////////////////////////////////
+
+    @Deprecated
+    public void setOnHeaderStatusChangedListener(OnHeaderStatusChangedListener callback) {
+        mSingleHeaderStatusChangedListener = callback;
+    }
+
+    @Deprecated
+    public void removeOnHeaderStatusChangedListener() {
+        mSingleHeaderStatusChangedListener = null;
+    }
+
+    /**
+     * Add header status observe listener.
+     *
+     * @param callback header status changed observer
+     * @throws IllegalStateException Call this on work thread
+     */
+    @UiThread
+    public void addOnHeaderStatusChangedListener(OnHeaderStatusChangedListener callback) {
+        addOnHeaderStatusChangedListener(callback, false);
+    }
+
+    /**
+     * Add header status observe listener, optionally held by a weak reference only. A weak listener is dropped once
+     * it has been garbage collected, so a forgotten registration never keeps its owner alive. The caller has to
+     * keep a strong reference to it meanwhile, an anonymous listener held nowhere else would be lost right away.
+     *
+     * @param callback header status changed observer
+     * @param weakly   whether to hold the listener weakly
+     * @throws IllegalStateException Call this on work thread
+     */
+    @UiThread
+    public void addOnHeaderStatusChangedListener(OnHeaderStatusChangedListener callback, boolean weakly) {
+        if (Thread.currentThread() != Looper.getMainLooper().getThread()) {
+            throw new IllegalStateException("Should call this method on UiThread only.");
+        }
+
+        if (containsHeaderStatusChangedListener(callback)) {
+            return;
+        }
+
+        if (weakly) {
+            if (mWeakHeaderStatusChangedListeners == null) {
+                mWeakHeaderStatusChangedListeners = new ArrayList<>();
+            }
+            mWeakHeaderStatusChangedListeners.add(new WeakReference<>(callback));
+        } else {
+            if (mHeaderStatusChangedListeners == null) {
+                mHeaderStatusChangedListeners = new ArrayList<>();
+            }
+            mHeaderStatusChangedListeners.add(callback);
+        }
+    }
+
+    /**
+     * Add header status observe listener, which is removed when the owner gets destroyed, or when the header gets
+     * detached from its window, whichever comes first.
+     *
+     * @param owner    the Activity showing the header, or the view lifecycle owner of the Fragment showing it, see
+     *                 {@link HeaderCollapsibleLayout#addOnHeaderStatusChangedListener(LifecycleOwner,
+     *                 OnHeaderStatusChangedListener)}
+     * @param callback header status changed observer
+     * @throws IllegalStateException Call this on work thread
+     */
+    @UiThread
+    public void addOnHeaderStatusChangedListener(LifecycleOwner owner, OnHeaderStatusChangedListener callback) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+
+        addOnHeaderStatusChangedListener(callback, false);
+        final LifecycleBoundListener boundListener = new LifecycleBoundListener(this, owner, callback);
+        if (mLifecycleBoundListeners == null) {
+            mLifecycleBoundListeners = new ArrayList<>();
+        }
+        mLifecycleBoundListeners.add(boundListener);
+        owner.getLifecycle().addObserver(boundListener);
+    }
+
+    public void removeOnHeaderStatusChangedListener(OnHeaderStatusChangedListener listener) {
+        if (mHeaderStatusChangedListeners != null) {
+            mHeaderStatusChangedListeners.remove(listener);
+        }
+
+        if (mWeakHeaderStatusChangedListeners != null) {
+            for (int index = mWeakHeaderStatusChangedListeners.size() - 1; index >= 0; index--) {
+                OnHeaderStatusChangedListener l = mWeakHeaderStatusChangedListeners.get(index).get();
+                if (l == null || l == listener) {
+                    mWeakHeaderStatusChangedListeners.remove(index);
+                }
+            }
+        }
+    }
+
+    private boolean containsHeaderStatusChangedListener(OnHeaderStatusChangedListener listener) {
+        if (mHeaderStatusChangedListeners != null && mHeaderStatusChangedListeners.contains(listener)) {
+            return true;
+        }
+
+        if (mWeakHeaderStatusChangedListeners != null) {
+            for (int index = 0; index < mWeakHeaderStatusChangedListeners.size(); index++) {
+                if (mWeakHeaderStatusChangedListeners.get(index).get() == listener) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * Removes its listener on ON_DESTROY or once the header is detached, then lets go of the owner.
+     */
+    private static final class LifecycleBoundListener implements LifecycleObserver {
+        private final HeaderCollapseController mController;
+        private final LifecycleOwner mOwner;
+        private final OnHeaderStatusChangedListener mListener;
+
+        LifecycleBoundListener(HeaderCollapseController controller, LifecycleOwner owner,
+                               OnHeaderStatusChangedListener listener) {
+            mController = controller;
+            mOwner = owner;
+            mListener = listener;
+        }
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+        public void onDestroy() {
+            mController.mLifecycleBoundListeners.remove(this);
+            unbind();
+        }
+
+        void unbind() {
+            mController.removeOnHeaderStatusChangedListener(mListener);
+            mOwner.getLifecycle().removeObserver(this);
+        }
+    }
+
+    /**
+     * Reset status, and expand the header back if it has been laid out already.
+     */
+    public void reset() {
+        recycle();
+        if (isFirstLayoutDone()) {
+            // Unlike bind(), there may be no layout pass coming on its own
+            applyBoundState(0, EXPANDED, true);
+        } else {
+            setHeaderStatus(EXPANDED, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+        }
+    }
+
+    /**
+     * Get ready to be bound again, see {@link HeaderCollapsibleLayout#recycle()}.
+     */
+    public void recycle() {
+        // Dropped silently, their listeners would report a transition of the previous item
+        while (!mRunningAnimators.isEmpty()) {
+            Animator animator = mRunningAnimators.remove(mRunningAnimators.size() - 1);
+            animator.removeAllListeners();
+            animator.cancel();
+        }
+        mPredictingAnimator = null;
+        mPredictedHeaderHeight = -1;
+
+        mIsBeingDragged = false;
+        mIsScrollingDown = false;
+        lastHeaderHeight = 0;
+        unconsumedDy = 0;
+        lastVelocityY = -0.1F;
+        mOvershootScrollRemainder = 0;
+        mRefreshing = false;
+
+        final View host = mHost.getHostView();
+        if (host != null) {
+            host.removeCallbacks(mReleaseResourcesRunnable);
+            if (mHeaderScrollRange == 0 && host.getScrollY() != 0) {
+                host.scrollTo(0, 0);
+            }
+        }
+
+        notifyIfIdle();
+    }
+
+    /**
+     * Apply the state of the item being bound, see {@link HeaderCollapsibleLayout#bind(int, int, boolean)}.
+     */
+    public void bind(int collapsedOffset, @HeaderCollapsibleLayout.HeaderStatus int status, boolean contentChanged) {
+        if (!isFirstLayoutDone() || contentChanged) {
+            // Applied right after the coming first layout
+            mHasPendingBind = true;
+            mPendingBindOffset = collapsedOffset;
+            mPendingBindStatus = status;
+            if (isFirstLayoutDone()) {
+                invalidateFirstLayout();
+            }
+            return;
+        }
+
+        applyBoundState(collapsedOffset, status, false);
+    }
+
+    /*
+     * @param requestLayout false to only mark the header and the host, which the RecyclerView is about to lay out
+     */
+    private void applyBoundState(int collapsedOffset, @HeaderCollapsibleLayout.HeaderStatus int status,
+                                 boolean requestLayout) {
+        final int height = Math.max(mStickyFooterHeight, Math.min(mOrgHeaderHeight, mOrgHeaderHeight - collapsedOffset));
+        applyHeaderHeight(height, requestLayout);
+        if (!requestLayout) {
+            // Measured again by the next layout pass, without requesting one more
+            mTopView.forceLayout();
+            mHost.getHostView().forceLayout();
+        }
+
+        setHeaderStatus(status, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+        if (mIsEnabled) {
+            dispatchHeaderOffsetChanged(height);
+        }
+    }
+
+    /*
+     * Measure the header from scratch on the next layout pass, as if it had never been laid out.
+     */
+    private void invalidateFirstLayout() {
+        mOrgHeaderHeight = -1;
+        mOrgHeaderHeightBackup = -1;
+        mResolvedAnchors = null;
+        for (int index = 0; index < mBoundEffects.size(); index++) {
+            mBoundEffects.get(index).unbind();
+        }
+        mBoundEffects.clear();
+
+        final ViewGroup.LayoutParams lp = mTopView.getLayoutParams();
+        lp.height = mHeaderLayoutHeight;
+        mTopView.forceLayout();
+        mHost.getHostView().forceLayout();
+
+        mHeaderScrollRange = 0;
+        if (mHeaderScroll != 0) {
+            mHeaderScroll = 0;
+            mHost.getHostView().scrollTo(0, 0);
+        }
+    }
+
+    @HeaderCollapsibleLayout.HeaderStatus
+    public int getCurrentHeaderStatus() {
+        return mCurHeaderStatus;
+    }
+
+    public void collapse() {
+        changeHeaderHeightTo(mStickyFooterHeight);
+
+        setHeaderStatus(COLLAPSED, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+
+        lastVelocityY = 0.1F;  // To make sure next fling action performs well
+    }
+
+    public void smoothCollapse() {
+        smoothChangeHeaderHeightTo(mStickyFooterHeight, new AnimatorListener() {
+            @Override
+            public void onAnimationStart(Animator animation) {
+                setHeaderStatus(COLLAPSING, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+
+                dispatchHeaderStartCollapsing();
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                setHeaderStatus(COLLAPSED, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+
+                dispatchHeaderCollapsed();
+            }
+
+            @Override
+            public void onAnimationCancel(Animator animation) {
+            }
+
+            @Override
+            public void onAnimationRepeat(Animator animation) {
+            }
+        });
+
+        lastVelocityY = 0.1F;  // To make sure next fling action performs well
+    }
+
+    public void expand() {
+        changeHeaderHeightTo(mOrgHeaderHeight);
+
+        setHeaderStatus(EXPANDED, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+
+        lastVelocityY = -0.1F;  // To make sure next fling action performs well
+    }
+
+    public void smoothExpand() {
+        smoothChangeHeaderHeightTo(mOrgHeaderHeight, new AnimatorListener() {
+            @Override
+            public void onAnimationStart(Animator animation) {
+                setHeaderStatus(EXPANDING, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+
+                dispatchHeaderStartExpanding();
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                setHeaderStatus(EXPANDED, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+
+                dispatchHeaderExpanded();
+            }
+
+            @Override
+            public void onAnimationCancel(Animator animation) {
+            }
+
+            @Override
+            public void onAnimationRepeat(Animator animation) {
+            }
+        });
+
+        lastVelocityY = -0.1F;  // To make sure next fling action performs well
+    }
+
+    /**
+     * Move the header to the given status and scroll the body in one animation, with a single update per frame.
+     * A touch on the body cancels it.
+     *
+     * @param targetStatus {@link HeaderCollapsibleLayout#EXPANDED} or {@link HeaderCollapsibleLayout#COLLAPSED}
+     * @param bodyScroller how the body scrolls along with the header, or null to only move the header
+     * @param listener     notified of the combined progress, or null
+     */
+    public void smoothChangeTo(@HeaderCollapsibleLayout.HeaderStatus int targetStatus, @Nullable BodyScroller bodyScroller,
+                               @Nullable final OnCoordinatedScrollListener listener) {
+        if (mCoordinatedScroll != null && mCoordinatedScroll.isStarted()) {
+            mCoordinatedScroll.cancel();
+        }
+
+        final boolean expand = targetStatus == EXPANDED || targetStatus == EXPANDING;
+        final int desHeight = expand ? mOrgHeaderHeight : mStickyFooterHeight;
+        final boolean headerMoves = getPendingHeaderHeight() != desHeight;
+        mCoordinatedScroll = smoothChangeHeaderHeightTo(desHeight, 300L, new AnimatorListener() {
+            private boolean mCanceled;
+
+            @Override
+            public void onAnimationStart(Animator animation) {
+                if (!headerMoves) {
+                    return;
+                }
+
+                setHeaderStatus(expand ? EXPANDING : COLLAPSING, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+                if (expand) {
+                    dispatchHeaderStartExpanding();
+                } else {
+                    dispatchHeaderStartCollapsing();
+                }
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                if (mCoordinatedScroll == animation) {
+                    mCoordinatedScroll = null;
+                }
+
+                if (!mCanceled && headerMoves) {
+                    setHeaderStatus(expand ? EXPANDED : COLLAPSED, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+                    if (expand) {
+                        dispatchHeaderExpanded();
+                    } else {
+                        dispatchHeaderCollapsed();
+                    }
+                }
+
+                if (listener != null) {
+                    listener.onCoordinatedScrollEnd(mCanceled);
+                }
+            }
+
+            @Override
+            public void onAnimationCancel(Animator animation) {
+                mCanceled = true;
+            }
+
+            @Override
+            public void onAnimationRepeat(Animator animation) {
+            }
+        }, bodyScroller, listener);
+
+        lastVelocityY = expand ? -0.1F : 0.1F;  // To make sure next fling action performs well
+    }
+
+    /**
+     * Add intermediate heights the header snaps to, on top of the expanded and collapsed ends. The auto drawer mode
+     * snaps to the nearest anchor in the scrolling direction, and a fling moves the header to the next anchor.
+     * The header status only settles to EXPANDED or COLLAPSED at the two ends.
+     *
+     * @param anchorHeights header heights in px, in any order, those out of the collapse range are ignored
+     */
+    public void setSnapAnchors(int... anchorHeights) {
+        mSnapAnchors = anchorHeights.clone();
+        Arrays.sort(mSnapAnchors);
+        mResolvedAnchors = null;
+    }
+
+    /**
+     * @return the snap anchor heights in px, sorted
+     */
+    public int[] getSnapAnchors() {
+        return mSnapAnchors.clone();
+    }
+
+    /**
+     * Smoothly move the header to one of the snap anchors.
+     *
+     * @param anchorIndex the index of the anchor within {@link #getSnapAnchors()}
+     */
+    public void smoothSnapToAnchor(int anchorIndex) {
+        final int desHeight = Math.max(mStickyFooterHeight, Math.min(mOrgHeaderHeight, mSnapAnchors[anchorIndex]));
+        if (desHeight != getPendingHeaderHeight()) {
+            smoothSnapTo(desHeight, HeaderTransitionLog.CAUSE_PROGRAMMATIC);
+        }
+    }
+
+    public void addOnAnchorReachedListener(OnAnchorReachedListener listener) {
+        if (mAnchorReachedListeners == null) {
+            mAnchorReachedListeners = new ArrayList<>();
+        }
+        if (!mAnchorReachedListeners.contains(listener)) {
+            mAnchorReachedListeners.add(listener);
+        }
+    }
+
+    public void removeOnAnchorReachedListener(OnAnchorReachedListener listener) {
+        if (mAnchorReachedListeners != null) {
+            mAnchorReachedListeners.remove(listener);
+        }
+    }
+
+    public void disableCollapsing() {
+        if (mOrgHeaderHeight != 0) {
+            mOrgHeaderHeightBackup = mOrgHeaderHeight;
+            mOrgHeaderHeight = 0;
+        }
+
+        mIsEnabled = false;
+    }
+
+    public void enableCollapsing() {
+        mOrgHeaderHeight = mOrgHeaderHeightBackup;
+        mIsEnabled = true;
+    }
+
+    public boolean isCollapsingEnabled() {
+        return mIsEnabled;
+    }
+
+    /**
+     * Collapse the header within the same layout pass as the window resize caused by the soft keyboard showing up,
+     * and expand it back when the keyboard goes away, if it was collapsed for it. Needs the window to be resized
+     * for the keyboard, with <code>adjustResize</code>. A height drop only counts as the keyboard while the view
+     * focused in the window is a text editor. Do not call {@link #smoothCollapse()} on focus meanwhile,
+     * its animation would be canceled by the resize anyway.
+     */
+    public void setImeSyncEnabled(boolean enabled) {
+        mImeSyncEnabled = enabled;
+        mCollapsedForIme = false;
+        mImeSyncLastWidth = 0;
+        mImeSyncLastHeight = 0;
+    }
+
+    public boolean isImeSyncEnabled() {
+        return mImeSyncEnabled;
+    }
+
+    /*
+     * Same as app:defaultExpand, before the first layout.
+     */
+    void setDefaultExpand(boolean defaultExpand) {
+        mDefaultExpand = defaultExpand;
+    }
+
+    /**
+     * Defer the inflation of the heavy part of the header while it starts collapsed, see
+     * {@link HeaderCollapsibleLayout#setLazyHeader(int, int, boolean)}. Call this before the first layout.
+     */
+    public void setLazyHeader(@IdRes int stubId, int expectedHeight, boolean prefetch) {
+        mLazyHeaderStubId = stubId;
+        mLazyHeaderHeight = expectedHeight;
+        mLazyHeaderPrefetch = prefetch;
+    }
+
+    /**
+     * @return whether the deferred part of the header has been inflated, or if there is no such part
+     */
+    public boolean isLazyHeaderInflated() {
+        return findLazyHeaderStub() == null;
+    }
+
+    /**
+     * Let the heavy content of the header go while collapsed, see
+     * {@link HeaderCollapsibleLayout#setHeaderResourceHook(HeaderResourceHook)}.
+     */
+    public void setHeaderResourceHook(@Nullable HeaderResourceHook hook) {
+        if (mResourcesReleased) {
+            restoreHeaderResources();
+        }
+        if (hook == null && mTrimMemoryContext != null) {
+            mTrimMemoryContext.unregisterComponentCallbacks(mTrimMemoryCallbacks);
+            mTrimMemoryContext = null;
+        }
+
+        mResourceHook = hook;
+        requestHostLayout();  // Registers for onTrimMemory()
+    }
+
+    /**
+     * @param timeoutMillis how long the header stays collapsed before its resources are released, or a negative
+     *                      value to only release them on low memory
+     */
+    public void setHeaderReleaseTimeout(long timeoutMillis) {
+        mReleaseTimeoutMillis = timeoutMillis;
+        if (mResourceHook != null) {
+            onResourceStatusChanged(mCurHeaderStatus);
+        }
+    }
+
+    public boolean isHeaderResourcesReleased() {
+        return mResourcesReleased;
+    }
+
+    /**
+     * Reveal the header as soon as the body is scrolled back, wherever it is, see
+     * {@link HeaderCollapsibleLayout#setQuickReturnEnabled(boolean)}.
+     */
+    public void setQuickReturnEnabled(boolean quickReturnEnabled) {
+        mQuickReturnEnabled = quickReturnEnabled;
+    }
+
+    public boolean isQuickReturnEnabled() {
+        return mQuickReturnEnabled;
+    }
+
+    /**
+     * Scroll through a header taller than the host before collapsing it, see
+     * {@link HeaderCollapsibleLayout#setTallHeaderEnabled(boolean)}. Needs the layout form, the behavior has no
+     * wrapper to scroll and ignores it.
+     */
+    public void setTallHeaderEnabled(boolean tallHeaderEnabled) {
+        if (mTallHeaderEnabled == tallHeaderEnabled) {
+            return;
+        }
+
+        mTallHeaderEnabled = tallHeaderEnabled;
+        if (isFirstLayoutDone()) {
+            bind(0, EXPANDED, true);
+            mHost.getHostView().requestLayout();
+        }
+    }
+
+    public boolean isTallHeaderEnabled() {
+        return mTallHeaderEnabled;
+    }
+
+    /*
+     * @return how much of the header is scrolled through before it collapses, 0 unless taller than the host
+     */
+    int getHeaderScrollRange() {
+        return mHeaderScrollRange;
+    }
+
+    private boolean supportsTallHeader() {
+        return mTallHeaderEnabled && mHost.getHostView() != mTopView;
+    }
+
+    /*
+     * @return whether the range changed
+     */
+    private boolean updateHeaderScrollRange() {
+        final int range = supportsTallHeader() && mAvailableHeight > 0
+                ? Math.max(0, mOrgHeaderHeight - mAvailableHeight) : 0;
+        if (range == mHeaderScrollRange) {
+            return false;
+        }
+
+        mHeaderScrollRange = range;
+        return true;
+    }
+
+    public void setSupportFlingAction(boolean supportFlingAction) {
+        mSupportFlingAction = supportFlingAction;
+    }
+
+    public void setAutoDrawerModeEnabled(boolean autoDrawerModeEnabled) {
+        mAutoDrawerModeEnabled = autoDrawerModeEnabled;
+    }
+
+    /**
+     * @param overshootDistance the max overshoot distance in px, 0 to disable the overshoot action
+     */
+    public void setOvershootDistance(int overshootDistance) {
+        mOvershootDistance = Math.max(0, overshootDistance);
+    }
+
+    /**
+     * Turn the overshoot action into a pull-to-refresh trigger. Requires a positive overshoot distance.
+     *
+     * @param listener called once the header has been overshot beyond the trigger distance and released,
+     *                 or null to disable refreshing
+     */
+    public void setOnRefreshListener(@Nullable HeaderCollapsibleLayout.OnRefreshListener listener) {
+        mRefreshListener = listener;
+    }
+
+    /**
+     * @param triggerDistance the overshoot distance in px that triggers a refresh on release
+     */
+    public void setRefreshTriggerDistance(int triggerDistance) {
+        mRefreshTriggerDistance = triggerDistance;
+    }
+
+    /**
+     * @param holdDistance the overshoot distance in px the header holds at while refreshing, defaults to the
+     *                     trigger distance
+     */
+    public void setRefreshHoldDistance(int holdDistance) {
+        mRefreshHoldDistance = holdDistance;
+    }
+
+    /**
+     * Show or release the refreshing state. Unlike a refresh triggered by the user, showing it from here does not
+     * call the {@link HeaderCollapsibleLayout.OnRefreshListener}.
+     */
+    public void setRefreshing(boolean refreshing) {
+        if (mRefreshing == refreshing) {
+            return;
+        }
+
+        mRefreshing = refreshing;
+        if (mTopView == null || mOrgHeaderHeight <= 0 || mIsBeingDragged) {
+            return;  // The header will settle at the right height once released
+        }
+
+        if (refreshing) {
+            bounceBackTo(mOrgHeaderHeight + getRefreshHoldDistance());
+        } else if (getPendingHeaderHeight() > mOrgHeaderHeight) {
+            bounceBackTo(mOrgHeaderHeight);
+        }
+    }
+
+    public boolean isRefreshing() {
+        return mRefreshing;
+    }
+
+    /**
+     * Set how the nested scroll deltas are shared with the scrolling parent of the host, if any. The unconsumed
+     * deltas sent after the body has scrolled are always handled by the header first, and the rest is passed on.
+     *
+     * @param chainingPolicy one of {@link HeaderCollapsibleLayout#CHAIN_PARENT_FIRST},
+     *                       {@link HeaderCollapsibleLayout#CHAIN_SELF_FIRST} and {@link HeaderCollapsibleLayout#CHAIN_SPLIT}
+     */
+    public void setNestedScrollChainingPolicy(@HeaderCollapsibleLayout.ChainingPolicy int chainingPolicy) {
+        mChainingPolicy = chainingPolicy;
+    }
+
+    @HeaderCollapsibleLayout.ChainingPolicy
+    public int getNestedScrollChainingPolicy() {
+        return mChainingPolicy;
+    }
+
+    /**
+     * Pin a section of the header, which stays visible while the header collapses. The pinned sections are
+     * stacked at the bottom of the collapsed header, the lowest pin order on top, and their heights are tracked
+     * so the collapse range follows them whenever they change.
+     *
+     * @param section  a descendant of the header view
+     * @param pinOrder the stacking order, the section with the highest one sits at the very bottom
+     */
+    public void addPinnedSection(View section, int pinOrder) {
+        if (findPinnedSection(section) != null) {
+            return;
+        }
+
+        PinnedSection pinned = new PinnedSection(section, pinOrder);
+        int index = 0;
+        while (index < mPinnedSections.size() && mPinnedSections.get(index).order <= pinOrder) {
+            index++;
+        }
+        mPinnedSections.add(index, pinned);
+
+        pinned.height = section.getHeight();
+        mPinnedSectionsHeight += pinned.height;
+        section.addOnLayoutChangeListener(mPinnedSectionLayoutListener);
+        onPinnedSectionsHeightChanged();
+        requestHostLayout();
+    }
+
+    public void removePinnedSection(View section) {
+        PinnedSection pinned = findPinnedSection(section);
+        if (pinned == null) {
+            return;
+        }
+
+        mPinnedSections.remove(pinned);
+        mPinnedSectionsHeight -= pinned.height;
+        section.removeOnLayoutChangeListener(mPinnedSectionLayoutListener);
+        section.setTranslationY(0);
+        onPinnedSectionsHeightChanged();
+    }
+
+    /**
+     * Append a collapsible stage to the header. The stages collapse one after another in the order they were added,
+     * each of them being moved up by its collapsed offset, while the header still changes its height once per frame.
+     * Stages are expected to be laid out from top to bottom in the same order, and should not be pinned sections.
+     *
+     * @param stage a descendant of the header view
+     */
+    public void addCollapsibleStage(View stage) {
+        for (int index = 0; index < mStages.size(); index++) {
+            if (mStages.get(index).view == stage) {
+                return;
+            }
+        }
+
+        CollapsibleStage collapsibleStage = new CollapsibleStage(stage);
+        collapsibleStage.height = stage.getHeight();
+        mStages.add(collapsibleStage);
+    }
+
+    /**
+     * Add an effect mapping a view property of a header descendant onto the collapse of the header, see
+     * {@link HeaderEffect}. It is applied right away if the header has been laid out already.
+     */
+    public void addHeaderEffect(HeaderEffect effect) {
+        if (mEffects.contains(effect)) {
+            return;
+        }
+
+        mEffects.add(effect);
+        if (isFirstLayoutDone()) {
+            bindHeaderEffect(effect);
+            applyHeaderEffects(getPendingHeaderHeight());
+        }
+    }
+
+    /**
+     * Remove an effect, and put the property it drove back to its neutral value.
+     */
+    public void removeHeaderEffect(HeaderEffect effect) {
+        mEffects.remove(effect);
+        if (mBoundEffects.remove(effect)) {
+            effect.unbind();
+        }
+    }
+
+    public void clearHeaderEffects() {
+        for (int index = 0; index < mBoundEffects.size(); index++) {
+            mBoundEffects.get(index).unbind();
+        }
+        mBoundEffects.clear();
+        mEffects.clear();
+    }
+
+    public void clearCollapsibleStages() {
+        for (int index = 0; index < mStages.size(); index++) {
+            mStages.get(index).view.setTranslationY(0);
+        }
+        mStages.clear();
+    }
+
+    public int getCollapsibleStageCount() {
+        return mStages.size();
+    }
+
+    @HeaderCollapsibleLayout.HeaderStatus
+    public int getStageStatus(int stageIndex) {
+        return mStages.get(stageIndex).status;
+    }
+
+    public int getStageOffset(int stageIndex) {
+        return mStages.get(stageIndex).offset;
+    }
+
+    public void addOnStageChangedListener(OnStageChangedListener listener) {
+        if (mStageChangedListeners == null) {
+            mStageChangedListeners = new ArrayList<>();
+        }
+        if (!mStageChangedListeners.contains(listener)) {
+            mStageChangedListeners.add(listener);
+        }
+    }
+
+    public void removeOnStageChangedListener(OnStageChangedListener listener) {
+        if (mStageChangedListeners != null) {
+            mStageChangedListeners.remove(listener);
+        }
+    }
+
+    /**
+     * @return the height the header collapses to, which is the total height of the pinned sections
+     */
+    public int getStickyFooterHeight() {
+        return mStickyFooterHeight;
+    }
+
+    /**
+     * Set how the header subtree is culled while the header stays collapsed. The culled views are brought back
+     * on the first expand frame, before the header grows.
+     *
+     * @param cullingMode one of {@link HeaderCollapsibleLayout#CULLING_NONE}, {@link HeaderCollapsibleLayout#CULLING_DRAW}
+     *                    and {@link HeaderCollapsibleLayout#CULLING_DRAW_AND_MEASURE}
+     */
+    public void setCollapsedHeaderCulling(@HeaderCollapsibleLayout.CullingMode int cullingMode) {
+        if (mCullingMode == cullingMode) {
+            return;
+        }
+
+        if (mHeaderCulled) {
+            restoreCulledHeader();
+        }
+        mCullingMode = cullingMode;
+        requestHostLayout();
+    }
+
+    @HeaderCollapsibleLayout.CullingMode
+    public int getCollapsedHeaderCulling() {
+        return mCullingMode;
+    }
+
+    /**
+     * Start recording the header status transitions into a ring log, which keeps the latest
+     * <code>capacity</code> entries. Recording is free of allocations, and costs nothing at all while disabled.
+     *
+     * @param capacity max count of the kept transitions
+     */
+    public void enableTransitionLog(int capacity) {
+        if (mTransitionLog != null && mTransitionLog.capacity() == capacity) {
+            return;
+        }
+
+        mTransitionLog = new HeaderTransitionLog(capacity);
+    }
+
+    public void disableTransitionLog() {
+        mTransitionLog = null;
+    }
+
+    /**
+     * @return the transition log, or null if it has not been enabled
+     */
+    @Nullable
+    public HeaderTransitionLog getTransitionLog() {
+        return mTransitionLog;
+    }
+
+    /**
+     * Profile every listener callback, see {@link HeaderListenerProfiler}.
+     *
+     * @param profiler the profiler to report to, or null to stop profiling
+     */
+    public void setListenerProfiler(@Nullable HeaderListenerProfiler profiler) {
+        mListenerProfiler = profiler;
+    }
+
+    @Nullable
+    public HeaderListenerProfiler getListenerProfiler() {
+        return mListenerProfiler;
+    }
+
+    /**
+     * Print the current header state together with the recorded transitions, for bug reports.
+     */
+    public void dumpTransitionLog(PrintWriter writer) {
+        writer.print("HeaderCollapsibleLayout: status=");
+        writer.print(HeaderTransitionLog.statusToString(mCurHeaderStatus));
+        writer.print(" height=");
+        writer.print(getPendingHeaderHeight());
+        writer.print(" range=[");
+        writer.print(mStickyFooterHeight);
+        writer.print(", ");
+        writer.print(mOrgHeaderHeight);
+        writer.println("]");
+
+        if (mTransitionLog == null) {
+            writer.println("HeaderTransitionLog: disabled");
+        } else {
+            mTransitionLog.dump(writer);
+        }
+    }
+
+    /**
+     * Bind this header to a collapse state shared with other headers, see {@link HeaderCollapseState}.
+     * The header takes the shared state lazily, right before it is drawn on screen or measured again.
+     *
+     * @param state the shared state, or null to unbind
+     */
+    public void setSharedCollapseState(@Nullable HeaderCollapseState state) {
+        if (mSharedState == state) {
+            return;
+        }
+
+        mSharedState = state;
+        mAppliedStateVersion = 0;  // A fresh state has nothing to adopt until a header publishes to it
+        if (state == null) {
+            unobserveHost();
+            return;
+        }
+
+        observeHost();
+        if (state.getVersion() != 0 && mHost.getHostView() != null) {
+            mHost.getHostView().invalidate();
+        }
+    }
+
+    @Nullable
+    public HeaderCollapseState getSharedCollapseState() {
+        return mSharedState;
+    }
+
+    /**
+     * @return the height the header is animating to, or its current height when no animation is running, in px
+     */
+    public int getPredictedHeaderHeight() {
+        return mPredictedHeaderHeight != -1 ? mPredictedHeaderHeight : getPendingHeaderHeight();
+    }
+
+    /**
+     * @return how much the body is still going to grow before the running animation ends, in px, 0 when it is not
+     * going to grow
+     */
+    public int getPredictedBodyGrowth() {
+        return Math.max(0, getPendingHeaderHeight() - getPredictedHeaderHeight());
+    }
+
+    /**
+     * @param listener notified each time the header starts animating towards a known height, or null
+     */
+    public void setOnHeaderPredictionListener(@Nullable OnHeaderPredictionListener listener) {
+        mPredictionListener = listener;
+    }
+
+    /* ▲ Public methods ends */
+
+    /*
+     * stop intercepting nested scroll event when header layout has been shown or hidden.
+     */
+    private boolean shouldConsumeNestedScroll(int dy) {
+        if (dy > 0) {
+            //return getScrollY() < mOrgHeaderHeight;
+            return getHeaderHeight() > mStickyFooterHeight;
+        } else {
+            //return getScrollY() > -mOvershootDistance;
+            return getHeaderHeight() < mOrgHeaderHeight + mOvershootDistance;
+        }
+    }
+
+    /*
+     * prevent the view to be over scrolled by a long drag move
+     */
+    private boolean isReachedEdge(int dy, int headerHeight) {
+        if (dy > 0) {
+            //return dy > (mOrgHeaderHeight - getScrollY());
+            return dy > headerHeight - mStickyFooterHeight;
+        } else {
+            //return Math.abs(dy) > (getScrollY() + mOvershootDistance);
+            return Math.abs(dy) > (mOrgHeaderHeight + mOvershootDistance) - headerHeight;
+
+        }
+    }
+
+    private void setHeaderStatus(@HeaderCollapsibleLayout.HeaderStatus int status,
+                                 @HeaderTransitionLog.TransitionCause int cause) {
+        if (mCurHeaderStatus == status) {
+            return;
+        }
+
+        if (mTransitionLog != null) {
+            mTransitionLog.record(mCurHeaderStatus, status, cause, getPendingHeaderHeight());
+        }
+
+        mCurHeaderStatus = status;
+
+        if (status != COLLAPSED && mHeaderCulled) {
+            restoreCulledHeader();
+        }
+
+        if (mResourceHook != null) {
+            onResourceStatusChanged(status);
+        }
+
+        if (mSharedState != null && !mAdoptingSharedState) {
+            publishSharedState();
+        }
+    }
+
+    private boolean isHeaderFullyCollapsed() {
+        return mTopView != null && mOrgHeaderHeight > 0 && mCurHeaderStatus == COLLAPSED
+                && getPendingHeaderHeight() == mStickyFooterHeight && getHeaderHeight() == mStickyFooterHeight;
+    }
+
+    /*
+     * Hide the header children which can not be seen while collapsed: the ones outside the sticky footer area,
+     * and the ones fully covered by an opaque sticky footer.
+     */
+    private void cullHeader() {
+        mHeaderCulled = true;
+        if (!(mTopView instanceof ViewGroup)) {
+            return;  // A plain header view has nothing to cull
+        }
+
+        final ViewGroup header = (ViewGroup) mTopView;
+        final int visibleHeight = header.getHeight();
+        final int hiddenVisibility = mCullingMode == CULLING_DRAW ? View.INVISIBLE : View.GONE;
+        for (int index = 0; index < header.getChildCount(); index++) {
+            View child = header.getChildAt(index);
+            if (child.getVisibility() != View.VISIBLE || containsPinnedSection(child)) {
+                continue;
+            }
+
+            int top = Math.max(child.getTop() + (int) child.getTranslationY(), 0);
+            int bottom = Math.min(child.getBottom() + (int) child.getTranslationY(), visibleHeight);
+            if (bottom <= top || isCoveredByPinnedSection(header, child.getLeft(), top, child.getRight(), bottom)) {
+                child.setVisibility(hiddenVisibility);
+                mCulledViews.add(child);
+            }
+        }
+    }
+
+    private boolean containsPinnedSection(View headerChild) {
+        for (int index = 0; index < mPinnedSections.size(); index++) {
+            View view = mPinnedSections.get(index).view;
+            while (view != null && view != headerChild) {
+                view = view.getParent() instanceof View ? (View) view.getParent() : null;
+            }
+            if (view == headerChild) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isCoveredByPinnedSection(ViewGroup header, int left, int top, int right, int bottom) {
+        for (int index = 0; index < mPinnedSections.size(); index++) {
+            View view = mPinnedSections.get(index).view;
+            if (view.getVisibility() != View.VISIBLE || !view.isOpaque()) {
+                continue;
+            }
+
+            view.getDrawingRect(mCullRect);
+            header.offsetDescendantRectToMyCoords(view, mCullRect);
+            mCullRect.offset(0, (int) view.getTranslationY());
+            if (mCullRect.left <= left && mCullRect.top <= top && mCullRect.right >= right && mCullRect.bottom >= bottom) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void restoreCulledHeader() {
+        if (mHost.getHostView() != null) {
+            mHost.getHostView().removeCallbacks(mCullHeaderRunnable);
+        }
+        mCullPending = false;
+
+        for (int index = 0; index < mCulledViews.size(); index++) {
+            mCulledViews.get(index).setVisibility(View.VISIBLE);
+        }
+        mCulledViews.clear();
+        mHeaderCulled = false;
+    }
+
+    private void dispatchHeaderStartCollapsing() {
+        dispatchHeaderEvent(HeaderListenerProfiler.CALLBACK_START_COLLAPSING, 0);
+    }
+
+    private void dispatchHeaderCollapsed() {
+        dispatchHeaderEvent(HeaderListenerProfiler.CALLBACK_COLLAPSED, 0);
+    }
+
+    private void dispatchHeaderStartExpanding() {
+        dispatchHeaderEvent(HeaderListenerProfiler.CALLBACK_START_EXPANDING, 0);
+    }
+
+    private void dispatchHeaderExpanded() {
+        dispatchHeaderEvent(HeaderListenerProfiler.CALLBACK_EXPANDED, 0);
+    }
+
+    /*
+     * @param headerHeight the header height, exact to the fraction of a pixel when known
+     */
+    private void dispatchHeaderOffsetChanged(float headerHeight) {
+        dispatchHeaderEvent(HeaderListenerProfiler.CALLBACK_OFFSET_CHANGED, headerHeight);
+    }
+
+    private void dispatchHeaderEvent(@HeaderListenerProfiler.ListenerCallback int callback, float headerHeight) {
+        final boolean traced = HeaderTrace.beginSection(HeaderTrace.SECTION_DISPATCH_LISTENERS);
+        final long start = mDebugHud != null ? System.nanoTime() : 0;
+        try {
+            performDispatchHeaderEvent(callback, headerHeight);
+        } finally {
+            HeaderTrace.endSection(traced);
+            if (mDebugHud != null) {
+                mDebugHud.onDispatch(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void performDispatchHeaderEvent(int callback, float headerHeight) {
+        if (mHeaderStatusChangedListeners != null) {
+            for (int index = 0; index < mHeaderStatusChangedListeners.size(); index++) {
+                notifyHeaderListener(mHeaderStatusChangedListeners.get(index), callback, headerHeight);
+            }
+        }
+
+        if (mWeakHeaderStatusChangedListeners != null) {
+            boolean collected = false;
+            for (int index = 0; index < mWeakHeaderStatusChangedListeners.size(); index++) {
+                OnHeaderStatusChangedListener l = mWeakHeaderStatusChangedListeners.get(index).get();
+                if (l == null) {
+                    collected = true;
+                    continue;
+                }
+                notifyHeaderListener(l, callback, headerHeight);
+            }
+
+            // Pruned once the dispatch is over, a listener may have added or removed listeners meanwhile
+            if (collected) {
+                for (int index = mWeakHeaderStatusChangedListeners.size() - 1; index >= 0; index--) {
+                    if (mWeakHeaderStatusChangedListeners.get(index).get() == null) {
+                        mWeakHeaderStatusChangedListeners.remove(index);
+                    }
+                }
+            }
+        }
+
+        if (mSingleHeaderStatusChangedListener != null) {
+            notifyHeaderListener(mSingleHeaderStatusChangedListener, callback, headerHeight);
+        }
+    }
+
+    private void notifyHeaderListener(OnHeaderStatusChangedListener l, int callback, float headerHeight) {
+        if (mListenerProfiler == null) {
+            deliverHeaderEvent(l, callback, headerHeight);
+            return;
+        }
+
+        // A request made while a layout is pending already costs no extra traversal
+        final boolean layoutPending = isHeaderOrBodyLayoutRequested();
+        final long start = mListenerProfiler.beginCallback(l, callback);
+        try {
+            deliverHeaderEvent(l, callback, headerHeight);
+        } finally {
+            mListenerProfiler.endCallback(start, !layoutPending && isHeaderOrBodyLayoutRequested());
+        }
+    }
+
+    /*
+     * The requests of their children stop at the first view flagged already, so the header and the body are
+     * checked rather than the host.
+     */
+    private boolean isHeaderOrBodyLayoutRequested() {
+        if (mTopView != null && mTopView.isLayoutRequested()) {
+            return true;
+        }
+
+        final View host = mHost.getHostView();
+        if (host instanceof ViewGroup && host != mTopView) {
+            final ViewGroup group = (ViewGroup) host;
+            for (int index = 0; index < group.getChildCount(); index++) {
+                if (group.getChildAt(index).isLayoutRequested()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void deliverHeaderEvent(OnHeaderStatusChangedListener l, int callback, float headerHeight) {
+        switch (callback) {
+            case HeaderListenerProfiler.CALLBACK_START_COLLAPSING:
+                l.onHeaderStartCollapsing();
+                break;
+            case HeaderListenerProfiler.CALLBACK_COLLAPSED:
+                l.onHeaderCollapsed();
+                break;
+            case HeaderListenerProfiler.CALLBACK_START_EXPANDING:
+                l.onHeaderStartExpanding();
+                break;
+            case HeaderListenerProfiler.CALLBACK_EXPANDED:
+                l.onHeaderExpanded();
+                break;
+            case HeaderListenerProfiler.CALLBACK_OFFSET_CHANGED:
+                final int roundedHeight = Math.round(headerHeight);
+                l.onHeaderOffsetChanged(mOrgHeaderHeight - roundedHeight, mOrgHeaderHeight,
+                        ((mOrgHeaderHeight - roundedHeight) * 1.0f) / (mOrgHeaderHeight - mStickyFooterHeight), mIsScrollingDown);
+                if (l instanceof OnHeaderStatusChangedListener2) {
+                    ((OnHeaderStatusChangedListener2) l).onHeaderExactOffsetChanged(mOrgHeaderHeight - headerHeight,
+                            mOrgHeaderHeight, (mOrgHeaderHeight - headerHeight) / (mOrgHeaderHeight - mStickyFooterHeight),
+                            mIsScrollingDown);
+                }
+                break;
+        }
+    }
+
+    void setDebugHud(@Nullable HeaderDebugHud debugHud) {
+        mDebugHud = debugHud;
+    }
+
+    /*
+     * @return the collapsed part of the header in px, negative while overshot
+     */
+    int getCollapsedOffset() {
+        return mOrgHeaderHeight > 0 ? mOrgHeaderHeight - getPendingHeaderHeight() : 0;
+    }
+
+    /*
+     * The height the header is going to be laid out with, which may differ from getHeight() until the next layout pass.
+     */
+    int getPendingHeaderHeight() {
+        if (mTopView == null) {
+            return 0;
+        }
+
+        ViewGroup.LayoutParams lp = mTopView.getLayoutParams();
+        return (lp != null && lp.height >= 0 ? lp.height : mTopView.getHeight()) - mHeaderScroll;
+    }
+
+    /*
+     * The laid out height of the header, less the part of a tall header scrolled out of the host.
+     */
+    private int getHeaderHeight() {
+        return mTopView.getHeight() - mHeaderScroll;
+    }
+
+    private void changeHeaderHeightTo(int desHeight) {
+        applyHeaderHeight(inflateLazyHeaderFor(desHeight));
+    }
+
+    /*
+     * All the changes of the header height go through here.
+     */
+    private void applyHeaderHeight(int height) {
+        applyHeaderHeight(height, true);
+    }
+
+    /*
+     * @param requestLayout false when the header is about to be measured anyway
+     */
+    private void applyHeaderHeight(int height, boolean requestLayout) {
+        mExactHeaderHeight = height;
+
+        if (mLazyHeaderStub != null && height > mStickyFooterHeight) {
+            // The first expand, the rest of the header has to be there before it shows up
+            inflateLazyHeader();
+        }
+
+        if (mHeaderCulled && height > mStickyFooterHeight) {
+            // Bring the culled views back within the same frame, before the header grows
+            restoreCulledHeader();
+        }
+
+        if (mResourcesReleased && height > mStickyFooterHeight) {
+            // Expanded by a path without the EXPANDING status, such as expand()
+            restoreHeaderResources();
+        }
+
+        // Down to the host height, a tall header keeps its full height and the host scrolls through it instead.
+        // Both move together then, the visible part of the header is the given height all along.
+        final int scroll = Math.max(0, Math.min(mOrgHeaderHeight - height, mHeaderScrollRange));
+        if (scroll != mHeaderScroll) {
+            mHeaderScroll = scroll;
+            mHost.getHostView().scrollTo(0, scroll);
+        }
+
+        final ViewGroup.LayoutParams lp = mTopView.getLayoutParams();
+        final boolean resized = lp.height != height + scroll;
+        lp.height = height + scroll;
+        if (requestLayout && (resized || mHeaderScrollRange == 0)) {
+            mTopView.setLayoutParams(lp);
+        }
+
+        if (!mStages.isEmpty()) {
+            applyStageOffsets(height);
+        }
+
+        if (!mBoundEffects.isEmpty()) {
+            applyHeaderEffects(height);
+        }
+
+        if (mSharedState != null && !mAdoptingSharedState) {
+            publishSharedState();
+        }
+    }
+
+    @Nullable
+    private ViewStub findLazyHeaderStub() {
+        if (mLazyHeaderStub == null && mLazyHeaderStubId != View.NO_ID && mTopView != null) {
+            View stub = mTopView.findViewById(mLazyHeaderStubId);
+            if (stub instanceof ViewStub) {
+                mLazyHeaderStub = (ViewStub) stub;
+            }
+            mLazyHeaderStubId = View.NO_ID;  // Looked up once
+        }
+
+        return mLazyHeaderStub;
+    }
+
+    /*
+     * The height measured by an earlier instance of the same lazy layout, otherwise the declared one.
+     */
+    private int getExpectedLazyHeaderHeight() {
+        return sLazyHeaderHeights.get(mLazyHeaderStub.getLayoutResource(), mLazyHeaderHeight);
+    }
+
+    private void inflateLazyHeader() {
+        final ViewStub stub = mLazyHeaderStub;
+        mLazyHeaderStub = null;
+        final int layoutRes = stub.getLayoutResource();
+        stub.inflate();
+
+        for (int index = 0; index < mEffects.size(); index++) {
+            if (!mBoundEffects.contains(mEffects.get(index))) {
+                bindHeaderEffect(mEffects.get(index));
+            }
+        }
+
+        if (!isFirstLayoutDone() || mTopView.getWidth() == 0) {
+            return;
+        }
+
+        // Correct the collapse range with the actual height, and remember it for the next time
+        mTopView.measure(View.MeasureSpec.makeMeasureSpec(mTopView.getWidth(), View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        final int fullHeight = Math.max(mStickyFooterHeight, mTopView.getMeasuredHeight());
+        sLazyHeaderHeights.put(layoutRes, fullHeight);
+        if (fullHeight != mOrgHeaderHeight) {
+            mOrgHeaderHeight = fullHeight;
+            mOrgHeaderHeightBackup = fullHeight;
+            mResolvedAnchors = null;
+        }
+    }
+
+    /*
+     * The full height of a lazy header is only known once inflated and measured, so the first expand does it before
+     * taking its target, rather than within a frame of its animation.
+     *
+     * @return the target corrected with the measured height
+     */
+    private int inflateLazyHeaderFor(int desHeight) {
+        if (mLazyHeaderStub == null || desHeight <= mStickyFooterHeight) {
+            return desHeight;
+        }
+
+        final int expectedHeight = mOrgHeaderHeight;
+        inflateLazyHeader();
+        if (desHeight >= expectedHeight) {
+            // The full height, or an overshoot beyond it
+            return desHeight + mOrgHeaderHeight - expectedHeight;
+        }
+        return Math.min(desHeight, mOrgHeaderHeight);
+    }
+
+    private final MessageQueue.IdleHandler mLazyHeaderPrefetcher = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            final View host = mHost.getHostView();
+            if (mLazyHeaderStub != null && host != null && host.getWindowToken() != null) {
+                inflateLazyHeader();
+            }
+            return false;  // Once is enough
+        }
+    };
+
+    /*
+     * Schedule the release once collapsed, and restore before anything else than COLLAPSED shows more header.
+     */
+    private void onResourceStatusChanged(@HeaderCollapsibleLayout.HeaderStatus int status) {
+        final View host = mHost.getHostView();
+        if (host != null) {
+            host.removeCallbacks(mReleaseResourcesRunnable);
+        }
+
+        if (status != COLLAPSED) {
+            if (mResourcesReleased) {
+                restoreHeaderResources();
+            }
+        } else if (host != null && mReleaseTimeoutMillis >= 0 && !mResourcesReleased) {
+            host.postDelayed(mReleaseResourcesRunnable, mReleaseTimeoutMillis);
+        }
+    }
+
+    private void releaseHeaderResources() {
+        if (mResourceHook == null || mResourcesReleased || mTopView == null || !isHeaderFullyCollapsed()) {
+            return;
+        }
+
+        mResourcesReleased = true;
+        mResourceHook.onReleaseHeaderResources(mTopView);
+    }
+
+    private void restoreHeaderResources() {
+        mResourcesReleased = false;
+        if (mResourceHook != null) {
+            mResourceHook.onRestoreHeaderResources(mTopView);
+        }
+    }
+
+    private final Runnable mReleaseResourcesRunnable = new Runnable() {
+        @Override
+        public void run() {
+            releaseHeaderResources();
+        }
+    };
+
+    private final ComponentCallbacks2 mTrimMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            // From the foreground getting short on memory on, the background levels are all above it
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                releaseHeaderResources();
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            releaseHeaderResources();
+        }
+    };
+
+    /*
+     * Keep the fraction of a pixel for the next change, while the layout gets the nearest whole height.
+     */
+    private void applyExactHeaderHeight(float exactHeight) {
+        applyHeaderHeight(Math.round(exactHeight));
+        mExactHeaderHeight = exactHeight;
+    }
+
+    /*
+     * @return the exact header height, unless the header has been changed by some other way since
+     */
+    private float getExactHeaderHeight() {
+        final int height = getPendingHeaderHeight();
+        return Math.round(mExactHeaderHeight) == height ? mExactHeaderHeight : height;
+    }
+
+    private void publishSharedState() {
+        if (mOrgHeaderHeight <= 0) {
+            return;
+        }
+
+        // The overshoot stays local to the header being dragged
+        final int collapsedOffset = Math.max(0, mOrgHeaderHeight - getPendingHeaderHeight());
+        mAppliedStateVersion = mSharedState.publish(collapsedOffset, mCurHeaderStatus);
+    }
+
+    /*
+     * Take the state published by another header bound to the same shared state, if this one is out of date.
+     *
+     * @param withinMeasure whether the header is about to be measured, then no layout is requested
+     * @return whether the header has been changed
+     */
+    private boolean adoptSharedState(boolean withinMeasure) {
+        if (mSharedState == null || mAppliedStateVersion == mSharedState.getVersion()) {
+            return false;
+        }
+        if (mTopView == null || mOrgHeaderHeight <= 0 || mIsBeingDragged) {
+            return false;
+        }
+
+        mAppliedStateVersion = mSharedState.getVersion();
+        final int height = Math.max(mStickyFooterHeight,
+                Math.min(mOrgHeaderHeight, mOrgHeaderHeight - mSharedState.getCollapsedOffset()));
+        if (height == getPendingHeaderHeight() && mSharedState.getStatus() == mCurHeaderStatus) {
+            return false;
+        }
+
+        if (mBounceBackForOvershooting != null && mBounceBackForOvershooting.isStarted()) {
+            mBounceBackForOvershooting.cancel();
+        }
+
+        mAdoptingSharedState = true;
+        try {
+            applyHeaderHeight(height, !withinMeasure);
+            setHeaderStatus(mSharedState.getStatus(), HeaderTransitionLog.CAUSE_SHARED_STATE);
+        } finally {
+            mAdoptingSharedState = false;
+        }
+
+        if (mIsEnabled) {
+            dispatchHeaderOffsetChanged(height);
+        }
+        return true;
+    }
+
+    private final ViewTreeObserver.OnPreDrawListener mSharedStatePreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            if (mSharedState == null || mAppliedStateVersion == mSharedState.getVersion()) {
+                return true;
+            }
+
+            final View host = mHost.getHostView();
+            if (host == null || !host.isShown() || !host.getGlobalVisibleRect(mVisibleRect)) {
+                return true;  // Still offscreen, adopt later
+            }
+
+            // Skip this frame, so the stale header is never shown
+            return !adoptSharedState(false);
+        }
+    };
+
+    private final View.OnAttachStateChangeListener mHostAttachStateListener = new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            v.getViewTreeObserver().addOnPreDrawListener(mSharedStatePreDrawListener);
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            v.getViewTreeObserver().removeOnPreDrawListener(mSharedStatePreDrawListener);
+        }
+    };
+
+    private void observeHost() {
+        unobserveHost();
+
+        final View host = mHost.getHostView();
+        if (host == null) {
+            return;
+        }
+
+        mObservedHost = host;
+        host.addOnAttachStateChangeListener(mHostAttachStateListener);
+        if (ViewCompat.isAttachedToWindow(host)) {
+            host.getViewTreeObserver().addOnPreDrawListener(mSharedStatePreDrawListener);
+        }
+    }
+
+    private void unobserveHost() {
+        if (mObservedHost == null) {
+            return;
+        }
+
+        mObservedHost.removeOnAttachStateChangeListener(mHostAttachStateListener);
+        mObservedHost.getViewTreeObserver().removeOnPreDrawListener(mSharedStatePreDrawListener);
+        mObservedHost = null;
+    }
+
+    private void bounceBackTo(int desHeight) {
+        if (mBounceBackForOvershooting != null && mBounceBackForOvershooting.isStarted()) {
+            mBounceBackForOvershooting.cancel();
+        }
+
+        mBounceBackForOvershooting = smoothChangeHeaderHeightTo(desHeight, 600L, new AnimatorListener() {
+            private boolean mCanceled;
+
+            @Override
+            public void onAnimationStart(Animator animation) {
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                if (mCanceled || mTransitionLog == null) {
+                    return;
+                }
+
+                // Logged only, a bounce back has never changed the status nor told the listeners about it
+                mTransitionLog.record(mCurHeaderStatus, mCurHeaderStatus, HeaderTransitionLog.CAUSE_BOUNCE_BACK,
+                        getPendingHeaderHeight());
+            }
+
+            @Override
+            public void onAnimationCancel(Animator animation) {
+                mCanceled = true;
+            }
+
+            @Override
+            public void onAnimationRepeat(Animator animation) {
+            }
+        });
+    }
+
+    /*
+     * Animate the header to an anchor height, and settle the status once there if it is one of the two ends.
+     */
+    private void smoothSnapTo(final int desHeight, @HeaderTransitionLog.TransitionCause final int cause) {
+        final boolean expanding = desHeight > getPendingHeaderHeight();
+        smoothChangeHeaderHeightTo(desHeight, new AnimatorListener() {
+            private boolean mCanceled;
+
+            @Override
+            public void onAnimationStart(Animator animation) {
+                if (cause == HeaderTransitionLog.CAUSE_AUTO_DRAWER) {
+                    return;
+                }
+
+                setHeaderStatus(expanding ? EXPANDING : COLLAPSING, cause);
+                if (cause == HeaderTransitionLog.CAUSE_PROGRAMMATIC) {
+                    if (expanding) {
+                        dispatchHeaderStartExpanding();
+                    } else {
+                        dispatchHeaderStartCollapsing();
+                    }
+                }
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                if (desHeight == mOrgHeaderHeight) {
+                    if (mIsEnabled) {
+                        dispatchHeaderExpanded();
+                    }
+
+                    setHeaderStatus(EXPANDED, cause);
+                } else if (desHeight == mStickyFooterHeight) {
+                    if (mIsEnabled) {
+                        dispatchHeaderCollapsed();
+                    }
+
+                    setHeaderStatus(COLLAPSED, cause);
+                }
+
+                if (!mCanceled) {
+                    dispatchAnchorReached(desHeight);
+                }
+            }
+
+            @Override
+            public void onAnimationCancel(Animator animation) {
+                mCanceled = true;
+            }
+
+            @Override
+            public void onAnimationRepeat(Animator animation) {
+            }
+        });
+    }
+
+    /*
+     * The snap anchors together with the two ends, sorted and without duplicates. Rebuilt only when they change.
+     */
+    private int[] getResolvedAnchors() {
+        if (mResolvedAnchors != null && mResolvedStickyHeight == mStickyFooterHeight
+                && mResolvedOrgHeight == mOrgHeaderHeight) {
+            return mResolvedAnchors;
+        }
+
+        int[] anchors = new int[mSnapAnchors.length + 2];
+        int count = 0;
+        anchors[count++] = mStickyFooterHeight;
+        for (int anchor : mSnapAnchors) {
+            if (anchor > anchors[count - 1] && anchor < mOrgHeaderHeight) {
+                anchors[count++] = anchor;
+            }
+        }
+        if (mOrgHeaderHeight > anchors[count - 1]) {
+            anchors[count++] = mOrgHeaderHeight;
+        }
+
+        mResolvedAnchors = Arrays.copyOf(anchors, count);
+        mResolvedStickyHeight = mStickyFooterHeight;
+        mResolvedOrgHeight = mOrgHeaderHeight;
+        return mResolvedAnchors;
+    }
+
+    /*
+     * @param collapsing whether to look below the height, or above it
+     * @param inclusive  whether an anchor right at the height is a match, or the next one is wanted
+     * @return the nearest anchor in the given direction, or the last one that way
+     */
+    private int findAnchor(int height, boolean collapsing, boolean inclusive) {
+        final int[] anchors = getResolvedAnchors();
+        int index = Arrays.binarySearch(anchors, height);
+        if (index >= 0) {
+            if (!inclusive) {
+                index += collapsing ? -1 : 1;
+            }
+        } else {
+            final int insertion = -index - 1;
+            index = collapsing ? insertion - 1 : insertion;
+        }
+
+        return anchors[Math.max(0, Math.min(anchors.length - 1, index))];
+    }
+
+    private void dispatchAnchorReached(int anchorHeight) {
+        if (mAnchorReachedListeners == null) {
+            return;
+        }
+
+        final int anchorIndex = Arrays.binarySearch(mSnapAnchors, anchorHeight);
+        for (int index = 0; index < mAnchorReachedListeners.size(); index++) {
+            mAnchorReachedListeners.get(index).onAnchorReached(anchorIndex >= 0 ? anchorIndex : -1, anchorHeight);
+        }
+    }
+
+    private int getRefreshHoldDistance() {
+        int holdDistance = mRefreshHoldDistance > 0 ? mRefreshHoldDistance : mRefreshTriggerDistance;
+        return Math.min(holdDistance, mOvershootDistance);
+    }
+
+    private Animator smoothScrollTo(int desY, long duration, AnimatorListener listener) {
+        ObjectAnimator yTranslate = ObjectAnimator.ofInt(mHost.getHostView(), "scrollY", desY);
+        yTranslate.setInterpolator(new DecelerateInterpolator());
+        yTranslate.setDuration(duration);
+        if (listener != null) {
+            yTranslate.addListener(listener);
+        }
+        startTrackedAnimator(yTranslate);
+        return yTranslate;
+    }
+
+    private Animator smoothChangeHeaderHeightTo(int desHeight, AnimatorListener listener) {
+        return smoothChangeHeaderHeightTo(desHeight, 300L, listener);
+    }
+
+    private Animator smoothChangeHeaderHeightTo(int desHeight, long duration, @Nullable AnimatorListener listener) {
+        return smoothChangeHeaderHeightTo(desHeight, duration, listener, null, null);
+    }
+
+    /*
+     * The body scroller, if any, scrolls the body within the same frames and along the same curve as the header.
+     */
+    private Animator smoothChangeHeaderHeightTo(int desHeight, long duration, @Nullable AnimatorListener listener,
+                                                @Nullable final BodyScroller bodyScroller,
+                                                @Nullable final OnCoordinatedScrollListener progressListener) {
+        if (desHeight < 0) {
+            return null;
+        }
+
+        desHeight = inflateLazyHeaderFor(desHeight);
+        final int bodyScrollDistance = bodyScroller != null ? bodyScroller.computeScrollDistance() : 0;
+
+        // Animate the plain height, the header may belong to any kind of parent
+        ValueAnimator animator = ValueAnimator.ofFloat(getExactHeaderHeight(), desHeight);
+        animator.setDuration(duration);
+        animator.setInterpolator(new DecelerateInterpolator());
+        animator.addUpdateListener(new AnimatorUpdateListener() {
+            private int mBodyScrolled;
+
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                final boolean traced = HeaderTrace.beginSection(HeaderTrace.SECTION_ANIMATOR_TICK);
+                try {
+                    final float height = (Float) animation.getAnimatedValue();
+                    if (mTopView != null) {
+                        lastHeaderHeight = getHeaderHeight();
+                        applyExactHeaderHeight(height);
+                    }
+
+                    if (bodyScroller != null) {
+                        final int bodyScrolled = Math.round(bodyScrollDistance * animation.getAnimatedFraction());
+                        if (bodyScrolled != mBodyScrolled) {
+                            bodyScroller.scrollBodyBy(bodyScrolled - mBodyScrolled);
+                            mBodyScrolled = bodyScrolled;
+                        }
+                    }
+
+                    dispatchHeaderOffsetChanged(height);
+
+                    if (progressListener != null) {
+                        progressListener.onCoordinatedScrollProgress(animation.getAnimatedFraction(),
+                                Math.round(height), mBodyScrolled);
+                    }
+                } finally {
+                    HeaderTrace.endSection(traced);
+                }
+            }
+        });
+        animator.addListener(mPredictionAnimatorListener);
+        if (listener != null) {
+            animator.addListener(listener);
+        }
+
+        // The target is known from now on, let the body get ready for it before the first frame
+        mPredictingAnimator = animator;
+        mPredictedHeaderHeight = desHeight;
+        if (mPredictionListener != null) {
+            mPredictionListener.onHeaderHeightPredicted(getPendingHeaderHeight(), desHeight);
+        }
+
+        startTrackedAnimator(animator);
+
+        return animator;
+    }
+
+    /*
+     * Whether a header animation, a snap, a fling or a bounce back, is still on its way.
+     */
+    boolean hasRunningAnimators() {
+        return !mRunningAnimators.isEmpty();
+    }
+
+    private void startTrackedAnimator(ValueAnimator animator) {
+        mRunningAnimators.add(animator);
+        animator.addListener(mRunningAnimatorTracker);
+        animator.start();
+        if (mAnimationClock != null) {
+            mAnimationClock.adopt(animator);
+        }
+    }
+
+    /*
+     * Whether the header is at rest, with no gesture moving it and no animation on its way.
+     */
+    boolean isIdle() {
+        return !mIsBeingDragged && mRunningAnimators.isEmpty();
+    }
+
+    /*
+     * The observers run each time the header comes to rest, see HeaderIdlingResource.
+     */
+    void addIdleObserver(Runnable observer) {
+        if (mIdleObservers == null) {
+            mIdleObservers = new ArrayList<>();
+        }
+        mIdleObservers.add(observer);
+    }
+
+    void removeIdleObserver(Runnable observer) {
+        if (mIdleObservers != null) {
+            mIdleObservers.remove(observer);
+        }
+    }
+
+    private void notifyIfIdle() {
+        if (mIdleObservers == null || !isIdle()) {
+            return;
+        }
+
+        for (int index = 0; index < mIdleObservers.size(); index++) {
+            mIdleObservers.get(index).run();
+        }
+    }
+
+    /**
+     * Drive the header animations from a virtual clock instead of the display frames, see
+     * {@link HeaderVirtualClock}. Only the animations started after this call are driven by the clock.
+     *
+     * @param clock the clock, or null to go back to the display frames
+     */
+    public void setAnimationClock(@Nullable HeaderVirtualClock clock) {
+        mAnimationClock = clock;
+    }
+
+    @Nullable
+    public HeaderVirtualClock getAnimationClock() {
+        return mAnimationClock;
+    }
+
+    private final AnimatorListener mRunningAnimatorTracker = new AnimatorListener() {
+        @Override
+        public void onAnimationStart(Animator animation) {
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            // The other end listeners have run, a snap following a bounce back is already tracked
+            if (mRunningAnimators.remove(animation)) {
+                notifyIfIdle();
+            }
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+        }
+
+        @Override
+        public void onAnimationRepeat(Animator animation) {
+        }
+    };
+
+    /*
+     * Called by the host once detached from the window. The running animators are referenced by the animation
+     * handler until they end, and their listeners reference the header, so jump them to their end values now.
+     */
+    void onHostDetached() {
+        if (mTrimMemoryContext != null) {
+            mTrimMemoryContext.unregisterComponentCallbacks(mTrimMemoryCallbacks);
+            mTrimMemoryContext = null;
+        }
+        if (mHost.getHostView() != null) {
+            mHost.getHostView().removeCallbacks(mReleaseResourcesRunnable);
+        }
+
+        // An end listener may start another animator, which is ended in turn
+        while (!mRunningAnimators.isEmpty()) {
+            mRunningAnimators.remove(mRunningAnimators.size() - 1).end();
+        }
+        notifyIfIdle();
+
+        // A Fragment outlives its views, its lifecycle would keep this whole hierarchy alive until it is destroyed
+        if (mLifecycleBoundListeners != null) {
+            while (!mLifecycleBoundListeners.isEmpty()) {
+                mLifecycleBoundListeners.remove(mLifecycleBoundListeners.size() - 1).unbind();
+            }
+        }
+    }
+
+    private final AnimatorListener mPredictionAnimatorListener = new AnimatorListener() {
+        @Override
+        public void onAnimationStart(Animator animation) {
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if (mPredictingAnimator == animation) {
+                mPredictingAnimator = null;
+                mPredictedHeaderHeight = -1;
+            }
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+        }
+
+        @Override
+        public void onAnimationRepeat(Animator animation) {
+        }
+    };
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Nested scroll events forwarded by the host
+    ///////////////////////////////////////////////////////////////////////////
+
+    boolean onStartNestedScroll(int nestedScrollAxes) {
+        if (mCoordinatedScroll != null && mCoordinatedScroll.isStarted()) {
+            mCoordinatedScroll.cancel();  // The user takes over
+        }
+
+        return (nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) == ViewCompat.SCROLL_AXIS_VERTICAL;
+    }
+
+    void onStopNestedScroll() {
+        final boolean traced = HeaderTrace.beginSection(HeaderTrace.SECTION_STOP_NESTED_SCROLL);
+        try {
+            performStopNestedScroll();
+        } finally {
+            HeaderTrace.endSection(traced);
+        }
+
+        // Unless the release started a snap or a bounce back
+        notifyIfIdle();
+    }
+
+    private void performStopNestedScroll() {
+        lastHeaderHeight = 0;
+        mOvershootScrollRemainder = 0;
+        mIsBeingDragged = false;
+
+        final View host = mHost.getHostView();
+        if (mOvershootDistance > 0
+                && ((getHeaderHeight() > mOrgHeaderHeight) || (mOrgHeaderHeight == 0
+                && host.getScrollY() < 0))) {
+            if (mBounceBackForOvershooting != null && mBounceBackForOvershooting.isStarted()) {
+                mBounceBackForOvershooting.cancel();
+            }
+            if (mOrgHeaderHeight > 0 && getHeaderHeight() > mOrgHeaderHeight) {
+                if (!mRefreshing && mRefreshListener != null && mRefreshTriggerDistance > 0
+                        && getHeaderHeight() - mOrgHeaderHeight >= mRefreshTriggerDistance) {
+                    mRefreshing = true;
+                    mRefreshListener.onRefresh();
+                }
+
+                // Hold at the refreshing height until setRefreshing(false) is called
+                bounceBackTo(mRefreshing ? mOrgHeaderHeight + getRefreshHoldDistance() : mOrgHeaderHeight);
+            } else if (mOrgHeaderHeight == 0 && host.getScrollY() < 0) {
+                mBounceBackForOvershooting = smoothScrollTo(mOrgHeaderHeight, 600L, null);
+            }
+            return;
+        }
+
+        if (!mAutoDrawerModeEnabled || mCurHeaderStatus == EXPANDED || mCurHeaderStatus == COLLAPSED) {
+            return;
+        }
+        if (mHeaderScrollRange > 0 && getHeaderHeight() > mOrgHeaderHeight - mHeaderScrollRange) {
+            return;  // Released while scrolling through a tall header, it stays where it is like any scrolled content
+        }
+        // Drawer adsorb effect, towards the nearest anchor in the scrolling direction
+        if (mIsScrollingDown && (getHeaderHeight() > touchSlop)) {
+            smoothSnapTo(findAnchor(getHeaderHeight(), false, true), HeaderTransitionLog.CAUSE_AUTO_DRAWER);
+        } else if (!mIsScrollingDown && getHeaderHeight() < (mOrgHeaderHeight - touchSlop)){
+            smoothSnapTo(findAnchor(getHeaderHeight(), true, true), HeaderTransitionLog.CAUSE_AUTO_DRAWER);
+        }
+    }
+
+    /*
+     *  The sequence of the below callbacks should be onNestedPreScroll --> onNestedScroll --> onNestedPreFling --> onNestedFling
+     *  The fling related callbacks would only be called when a fling event detected.
+     */
+
+    /*
+     *  When scrolling down and dyUnconsumed is a non-zero value, means the child has consumed part of the scrolling event,
+     *  here should expand the header.
+     *  Also see onNestedPreScroll(int dx, int dy, int[] consumed)
+     */
+    void onNestedScroll(int dyUnconsumed) {
+        onNestedScroll(dyUnconsumed, null);
+    }
+
+    /*
+     * @param offsetInWindow if not null, set to how far the parents moved the host in the window
+     */
+    void onNestedScroll(int dyUnconsumed, @Nullable int[] offsetInWindow) {
+        final boolean traced = HeaderTrace.beginSection(HeaderTrace.SECTION_NESTED_SCROLL);
+        try {
+            resetOffset(offsetInWindow);
+            performNestedScroll(dyUnconsumed, offsetInWindow);
+        } finally {
+            HeaderTrace.endSection(traced);
+        }
+    }
+
+    private void performNestedScroll(int dyUnconsumed, @Nullable int[] offsetInWindow) {
+        unconsumedDy = dyUnconsumed;
+
+        //final int oldScrollY = getScrollY();
+        // The pre scroll of the same event may already have moved the header, which is not laid out yet
+        final int headerHeight = getPendingHeaderHeight();
+
+        //if (dyUnconsumed < 0 && oldScrollY <= 0 && mIsEnabled) //Scrolling down and header has totally expanded
+        if (dyUnconsumed < 0 && headerHeight >= mOrgHeaderHeight && mIsEnabled) {
+            if (mCurHeaderStatus != EXPANDED) {
+                dispatchHeaderExpanded();
+
+                setHeaderStatus(EXPANDED, HeaderTransitionLog.CAUSE_DRAG);
+            }
+        }
+
+        int actualPerformedDy;
+        int actualConsumedDy;
+        boolean isReachedEdge;
+        float exactHeight;
+
+        //if (oldScrollY > -mOvershootDistance && oldScrollY <= mOrgHeaderHeight) {
+        if (headerHeight >= mStickyFooterHeight && mOrgHeaderHeight > 0 && headerHeight < mOrgHeaderHeight + mOvershootDistance) {
+            if (isReachedEdge = isReachedEdge(dyUnconsumed, headerHeight)) {
+                if (dyUnconsumed < 0) {
+                    //actualPerformedDy = -(getScrollY() + mOvershootDistance);
+                    actualPerformedDy = -(mOrgHeaderHeight - headerHeight + mOvershootDistance);
+                } else {
+                    //actualPerformedDy = mOrgHeaderHeight - getScrollY();
+                    actualPerformedDy = headerHeight - mStickyFooterHeight;
+                }
+                actualConsumedDy = actualPerformedDy;
+                exactHeight = headerHeight - actualPerformedDy;
+            } else {
+                if (headerHeight > mOrgHeaderHeight) {  // The layout has already been dragged to overshoot
+                    // Damped to a third, the fractions of a pixel add up over the events rather than being dropped
+                    float exactBase = Math.round(mExactHeaderHeight) == headerHeight ? mExactHeaderHeight : headerHeight;
+                    exactHeight = exactBase - dyUnconsumed / 3F;
+                    actualPerformedDy = headerHeight - Math.round(exactHeight);
+                } else {
+                    actualPerformedDy = dyUnconsumed;
+                    exactHeight = headerHeight - actualPerformedDy;
+                }
+                actualConsumedDy = dyUnconsumed;
+            }
+
+            // The value of actualConsumedDy and actualPerformedDy can be different only when in overshoot mode
+            //scrollBy(0, actualPerformedDy);
+            final boolean moved = (actualPerformedDy != 0 || exactHeight != mExactHeaderHeight) && mIsBeingDragged;
+            if (moved) {
+                lastHeaderHeight = headerHeight;
+                applyExactHeaderHeight(exactHeight);
+            }
+
+            // Scrolling down, and child has consumed part of(not all) the scrolling event
+            if (dyUnconsumed < 0) {
+
+                //if (oldScrollY <= mOrgHeaderHeight * 0.88 && mIsEnabled) //Give 12% buffer height here when sending out the expanding event, for better user experience
+                if (headerHeight >= (mOrgHeaderHeight - mStickyFooterHeight) * 0.12 && mIsEnabled) {
+                    dispatchHeaderOffsetChanged(headerHeight);
+
+                    if (mCurHeaderStatus != EXPANDING) {
+                        if (mCurHeaderStatus == COLLAPSED) {
+                            dispatchHeaderStartExpanding();
+
+                            setHeaderStatus(EXPANDING, HeaderTransitionLog.CAUSE_DRAG);
+                        }
+                    }
+                }
+            }
+
+            //int myConsumed = isReachedEdge ? actualConsumedDy : getScrollY() - oldScrollY;
+            // In overshoot mode the header only moves a third of the delta, but the whole delta has been consumed
+            int myConsumed = moved ? actualConsumedDy : 0;
+            int myUnconsumed = dyUnconsumed - myConsumed;
+
+            dispatchNestedScrollToParent(myConsumed, myUnconsumed, offsetInWindow);
+        } else if (mOrgHeaderHeight == 0 && mOvershootDistance > 0 && mHost.getHostView().getScrollY() > -mOvershootDistance) {
+            final int scrollY = mHost.getHostView().getScrollY();
+            final float exactDy = dyUnconsumed / 3F + mOvershootScrollRemainder;
+            actualPerformedDy = Math.round(exactDy);
+            actualConsumedDy = dyUnconsumed;
+            // Damped to a third until the overshoot distance or the rest position, beyond which the delta is left
+            final int edgeDy = dyUnconsumed < 0 ? -mOvershootDistance - scrollY : -scrollY;
+            if (dyUnconsumed < 0 ? actualPerformedDy <= edgeDy : actualPerformedDy >= edgeDy) {
+                actualPerformedDy = edgeDy;
+                actualConsumedDy = dyUnconsumed < 0 ? Math.max(dyUnconsumed, edgeDy * 3)
+                        : Math.min(dyUnconsumed, edgeDy * 3);
+                mOvershootScrollRemainder = 0;
+            } else {
+                mOvershootScrollRemainder = exactDy - actualPerformedDy;
+            }
+            mHost.getHostView().scrollTo(0, scrollY + actualPerformedDy);
+            dispatchNestedScrollToParent(actualConsumedDy, dyUnconsumed - actualConsumedDy, offsetInWindow);
+        } else {
+            dispatchNestedScrollToParent(0, dyUnconsumed, offsetInWindow);
+        }
+    }
+
+    private void dispatchNestedScrollToParent(int dyConsumed, int dyUnconsumed, @Nullable int[] offsetInWindow) {
+        if (mHost.dispatchNestedScroll(0, dyConsumed, 0, dyUnconsumed, mParentOffsetInWindow)) {
+            addParentOffset(offsetInWindow);
+        }
+    }
+
+    private static void resetOffset(@Nullable int[] offsetInWindow) {
+        if (offsetInWindow != null) {
+            offsetInWindow[0] = 0;
+            offsetInWindow[1] = 0;
+        }
+    }
+
+    /*
+     * The parents may move the host in the window on each dispatch, the shifts add up over a single scroll event.
+     */
+    private void addParentOffset(@Nullable int[] offsetInWindow) {
+        if (offsetInWindow != null) {
+            offsetInWindow[0] += mParentOffsetInWindow[0];
+            offsetInWindow[1] += mParentOffsetInWindow[1];
+        }
+    }
+
+    /*
+     * When scrolling up, first intercept the scrolling event to collapse the header, then give the event back to its child
+     * When scrolling down, let the child consume the scrolling first
+     * Also see onNestedScroll(int dyUnconsumed)
+     */
+    void onNestedPreScroll(int dx, int dy, int[] consumed) {
+        onNestedPreScroll(dx, dy, consumed, null);
+    }
+
+    /*
+     * @param offsetInWindow if not null, set to how far the parents moved the host in the window
+     */
+    void onNestedPreScroll(int dx, int dy, int[] consumed, @Nullable int[] offsetInWindow) {
+        final boolean traced = HeaderTrace.beginSection(HeaderTrace.SECTION_NESTED_PRE_SCROLL);
+        try {
+            resetOffset(offsetInWindow);
+            performNestedPreScroll(dx, dy, consumed, offsetInWindow);
+        } finally {
+            HeaderTrace.endSection(traced);
+        }
+    }
+
+    private void performNestedPreScroll(int dx, int dy, int[] consumed, @Nullable int[] offsetInWindow) {
+        int fixedDy = fixDy(dy);
+        if (Math.abs(fixedDy) > 3) {
+            mIsScrollingDown = (fixedDy < 0);
+            mIsBeingDragged = true;
+        }
+
+        consumed[0] = 0;
+        consumed[1] = 0;
+        final boolean parentFirst = mChainingPolicy == CHAIN_PARENT_FIRST
+                || (mChainingPolicy == CHAIN_SPLIT && dy < 0);
+
+        int remainingDx = dx;
+        int remainingDy = dy;
+        if (parentFirst) {
+            if (mHost.dispatchNestedPreScroll(remainingDx, remainingDy, mParentScrollConsumed, mParentOffsetInWindow)) {
+                consumed[0] += mParentScrollConsumed[0];
+                consumed[1] += mParentScrollConsumed[1];
+                addParentOffset(offsetInWindow);
+                remainingDx -= mParentScrollConsumed[0];
+                remainingDy -= mParentScrollConsumed[1];
+            }
+            if (remainingDy == 0) {
+                return;
+            }
+            fixedDy = fixDy(remainingDy);
+        }
+
+        final int selfConsumed = consumePreScroll(remainingDy, fixedDy, offsetInWindow);
+        consumed[1] += selfConsumed;
+        remainingDy -= selfConsumed;
+
+        if (!parentFirst && (remainingDx != 0 || remainingDy != 0)) {
+            if (mHost.dispatchNestedPreScroll(remainingDx, remainingDy, mParentScrollConsumed, mParentOffsetInWindow)) {
+                consumed[0] += mParentScrollConsumed[0];
+                consumed[1] += mParentScrollConsumed[1];
+                addParentOffset(offsetInWindow);
+            }
+        }
+    }
+
+    private int fixDy(int dy) {
+        if (mIsScrollingDown && mIsBeingDragged) {
+            // The body layout height is dynamically changing, and as well as the return of getY() which is a relative value.
+            // And thus it will lead to wrong calculation of dy.
+            // Here we make a manually adjust for dy value to correct the wrong dy caused by the changing of body height.
+            return dy < 0 ? dy : dy - Math.abs(lastHeaderHeight - getHeaderHeight());
+        }
+
+        return dy;
+    }
+
+    /*
+     * Collapse the header with the given pre-scroll delta.
+     *
+     * @return the part of dy consumed by the header
+     */
+    private int consumePreScroll(int dy, int fixedDy, @Nullable int[] offsetInWindow) {
+        if (!shouldConsumeNestedScroll(fixedDy)) {
+            return 0;
+        }
+
+        if (mBounceBackForOvershooting != null && mBounceBackForOvershooting.isStarted()) {
+            mBounceBackForOvershooting.cancel();
+        }
+        if (fixedDy < 0) {
+            if (fixedDy != dy) {
+                performNestedScroll(fixedDy, offsetInWindow);
+            } else if (mQuickReturnEnabled) {
+                return consumeQuickReturn(dy);
+            }
+            return 0;  // Scrolling down event would not be handled here
+        }
+
+        final int headerHeight = getHeaderHeight();
+
+        int actualPerformedDy;
+        boolean isReachedEdge = isReachedEdge(fixedDy, headerHeight);
+
+        if (isReachedEdge) {
+            actualPerformedDy = headerHeight > mStickyFooterHeight ? headerHeight - mStickyFooterHeight : 0;
+
+        } else {
+            actualPerformedDy = fixedDy;
+        }
+
+        // Before the touch slop the header stays where it is, and so does its status
+        final boolean moved = actualPerformedDy != 0 && mIsBeingDragged;
+        if (moved && mCurHeaderStatus != COLLAPSING) {
+            //if (getScrollY() >= -mOvershootDistance && getScrollY() < mOrgHeaderHeight && mIsEnabled) {
+            if (headerHeight > mStickyFooterHeight && headerHeight <= (mOrgHeaderHeight + mOvershootDistance) && mIsEnabled) {
+                dispatchHeaderStartCollapsing();
+
+                setHeaderStatus(COLLAPSING, HeaderTransitionLog.CAUSE_DRAG);
+            }
+        }
+
+        //scrollBy(0, actualPerformedDy);
+        final int newHeight = moved ? headerHeight - actualPerformedDy : headerHeight;
+        if (moved) {
+            lastHeaderHeight = headerHeight;
+            applyHeaderHeight(newHeight);
+        }
+
+        if (mIsEnabled) {
+            dispatchHeaderOffsetChanged(headerHeight);
+        }
+
+        // The header is only laid out at its new height later on, getHeaderHeight() is still the old one
+        //if (dy > 0 && getScrollY() >= mOrgHeaderHeight && mIsEnabled) {
+        if (newHeight == mStickyFooterHeight && mIsEnabled) {
+            if (mCurHeaderStatus != COLLAPSED) {
+                dispatchHeaderCollapsed();
+
+                setHeaderStatus(COLLAPSED, HeaderTransitionLog.CAUSE_DRAG);
+            }
+        }
+
+        if (!moved) {
+            return 0;  // Before the touch slop, or already at the edge, it all goes on to the body or the parent
+        }
+
+        // Only the distance the header moved is consumed, the rest is left to the others in the chain. The part of dy
+        // corrected by fixDy() is the shift of the body caused by the header itself, so it belongs to the header too.
+        return isReachedEdge ? Math.min(dy, actualPerformedDy + (dy - fixedDy)) : dy;
+    }
+
+    /*
+     * Expand the header with the given pre-scroll delta, before the body scrolls, wherever the body is. The header
+     * stops at its expanded height, the overshoot is still left to onNestedScroll() at the very top of the body.
+     *
+     * @return the part of dy consumed by the header
+     */
+    private int consumeQuickReturn(int dy) {
+        final int headerHeight = getHeaderHeight();
+        if (headerHeight >= mOrgHeaderHeight || !mIsBeingDragged) {
+            return 0;
+        }
+
+        if (mCurHeaderStatus != EXPANDING && mIsEnabled) {
+            dispatchHeaderStartExpanding();
+
+            setHeaderStatus(EXPANDING, HeaderTransitionLog.CAUSE_DRAG);
+        }
+
+        final int actualPerformedDy = Math.max(dy, headerHeight - mOrgHeaderHeight);
+        final int newHeight = headerHeight - actualPerformedDy;
+        lastHeaderHeight = headerHeight;
+        applyHeaderHeight(newHeight);
+
+        if (mIsEnabled) {
+            dispatchHeaderOffsetChanged(newHeight);
+        }
+
+        if (newHeight == mOrgHeaderHeight && mIsEnabled) {
+            dispatchHeaderExpanded();
+
+            setHeaderStatus(EXPANDED, HeaderTransitionLog.CAUSE_DRAG);
+        }
+
+        return actualPerformedDy;
+    }
+
+    /*
+     * When fling up and last-time fling was down side, smoothly collapse the header.
+     */
+    boolean onNestedPreFling(float velocityX, float velocityY) {
+        final boolean traced = HeaderTrace.beginSection(HeaderTrace.SECTION_NESTED_PRE_FLING);
+        try {
+            return performNestedPreFling(velocityX, velocityY);
+        } finally {
+            HeaderTrace.endSection(traced);
+        }
+    }
+
+    private boolean performNestedPreFling(float velocityX, float velocityY) {
+        if (mSupportFlingAction) {
+            if (velocityY > 0 && lastVelocityY < 0) {
+                if (mCurHeaderStatus != COLLAPSED) {
+                    // Smoothly collapsing the header, down to the next anchor
+                    smoothSnapTo(findAnchor(getPendingHeaderHeight(), true, false), HeaderTransitionLog.CAUSE_FLING);
+                }
+
+                lastVelocityY = velocityY;
+
+                return true;
+            }
+
+            // Fling down and has unconsumed vertical value, should handle this fling
+            if (velocityY < 0 && unconsumedDy < 0) {
+
+                // Smoothly expanding the header up to the next anchor, related callbacks would be called in onNestedScroll
+                if (mCurHeaderStatus != EXPANDED) {
+                    smoothSnapTo(findAnchor(getPendingHeaderHeight(), false, false), HeaderTransitionLog.CAUSE_FLING);
+                }
+            }
+        }
+
+        lastVelocityY = velocityY;
+
+        return mHost.dispatchNestedPreFling(velocityX, velocityY);
+    }
+}
@@ -0,0 +1,51 @@
+package com.troy.collapsibleheaderlayout;
+
+/**
+ * A collapse state shared by several headers, typically one per ViewPager page, so they all stay in sync.
+ * <p>
+ * Bind it with {@link HeaderCollapsibleLayout#setSharedCollapseState(HeaderCollapseState)}. The header which is
+ * being scrolled or animated publishes its collapsed offset and status here, and never touches the other ones.
+ * The other headers adopt the latest state lazily, right before they are drawn on screen or on their next measure,
+ * so switching page neither shows a jump nor forces a layout of the offscreen pages on every frame.
+ * <p>
+ * All the bound headers are expected to be used on the UiThread.
+ */
+public final class HeaderCollapseState {
+
+    private int mCollapsedOffset;
+    @HeaderCollapsibleLayout.HeaderStatus
+    private int mStatus = HeaderCollapsibleLayout.EXPANDED;
+    private int mVersion;
+
+    /**
+     * @return the collapsed part of the header in px, 0 when expanded
+     */
+    public int getCollapsedOffset() {
+        return mCollapsedOffset;
+    }
+
+    @HeaderCollapsibleLayout.HeaderStatus
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /*
+     * Bumped on each change, so a bound header can tell whether it is up to date with a single comparison.
+     */
+    int getVersion() {
+        return mVersion;
+    }
+
+    /*
+     * @return the version after publishing
+     */
+    int publish(int collapsedOffset, @HeaderCollapsibleLayout.HeaderStatus int status) {
+        if (collapsedOffset != mCollapsedOffset || status != mStatus) {
+            mCollapsedOffset = collapsedOffset;
+            mStatus = status;
+            mVersion++;
+        }
+
+        return mVersion;
+    }
+}
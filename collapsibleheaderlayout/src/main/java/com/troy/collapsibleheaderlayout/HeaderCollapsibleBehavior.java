@@ -0,0 +1,188 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.support.design.widget.CoordinatorLayout;
+import android.support.v4.view.ViewCompat;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * The collapse of {@link HeaderCollapsibleLayout} as a {@link CoordinatorLayout.Behavior}, attached straight to the
+ * header view of a CoordinatorLayout, so the header and the body need no wrapper layout.
+ * <p>
+ * Attach it to the header with <code>app:layout_behavior</code>, and {@link HeaderCollapsibleBodyBehavior} to the
+ * body, which is then laid out right below the header. The header view accepts the same collapse attributes as
+ * HeaderCollapsibleLayout, such as <code>app:overlayFooterId</code>, <code>app:overshootDistance</code> or
+ * <code>app:autoDrawerModeEnabled</code>, and everything else is reached through {@link #getController()}.
+ * <p>
+ * The overshoot action needs a non-empty header here, since there is no wrapper to scroll. The nested scrolls are
+ * not chained to the parents of the CoordinatorLayout either, which does not pass them on itself, so the chaining
+ * policy of the controller has no effect.
+ */
+public class HeaderCollapsibleBehavior extends CoordinatorLayout.Behavior<View> {
+
+    private final HeaderCollapseController mController;
+    private View mHeader;
+
+    public HeaderCollapsibleBehavior(Context context) {
+        mController = new HeaderCollapseController(context, mHost);
+    }
+
+    public HeaderCollapsibleBehavior(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        mController = new HeaderCollapseController(context, mHost);
+        if (attrs != null) {
+            final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.HeaderCollapsibleLayout, 0, 0);
+            mController.readAttributes(context, a);
+            a.recycle();
+        }
+    }
+
+    /**
+     * @return the behavior attached to the given view, or null if there is none
+     */
+    public static HeaderCollapsibleBehavior from(View view) {
+        ViewGroup.LayoutParams lp = view.getLayoutParams();
+        if (!(lp instanceof CoordinatorLayout.LayoutParams)) {
+            return null;
+        }
+
+        CoordinatorLayout.Behavior behavior = ((CoordinatorLayout.LayoutParams) lp).getBehavior();
+        return behavior instanceof HeaderCollapsibleBehavior ? (HeaderCollapsibleBehavior) behavior : null;
+    }
+
+    /**
+     * @return the collapse engine, which provides the same API as {@link HeaderCollapsibleLayout}
+     */
+    public HeaderCollapseController getController() {
+        return mController;
+    }
+
+    private final HeaderCollapseController.Host mHost = new HeaderCollapseController.Host() {
+        @Override
+        public View getHostView() {
+            return mHeader;
+        }
+
+        /*
+         * CoordinatorLayout does not pass nested scrolls on to its own parent, so there is nothing to chain to.
+         */
+        @Override
+        public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow) {
+            return false;
+        }
+
+        @Override
+        public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed,
+                                            int[] offsetInWindow) {
+            return false;
+        }
+
+        @Override
+        public boolean dispatchNestedPreFling(float velocityX, float velocityY) {
+            return false;
+        }
+
+        @Override
+        public void onHeaderFirstLayout() {
+        }
+    };
+
+    private final Runnable mFirstLayoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mController.onHeaderLaidOut();
+        }
+    };
+
+    private final View.OnAttachStateChangeListener mHeaderAttachStateListener = new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(View v) {
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            mController.onHostDetached();
+        }
+    };
+
+    @Override
+    public boolean onMeasureChild(CoordinatorLayout parent, View child, int parentWidthMeasureSpec, int widthUsed,
+                                  int parentHeightMeasureSpec, int heightUsed) {
+        if (mHeader == child) {
+            mController.onHostMeasure(View.MeasureSpec.getSize(parentWidthMeasureSpec),
+                    View.MeasureSpec.getSize(parentHeightMeasureSpec));
+        }
+
+        return false;  // Measured as usual by the CoordinatorLayout
+    }
+
+    @Override
+    public boolean onLayoutChild(CoordinatorLayout parent, View child, int layoutDirection) {
+        parent.onLayoutChild(child, layoutDirection);
+
+        if (mHeader != child) {
+            if (mHeader != null) {
+                mHeader.removeOnAttachStateChangeListener(mHeaderAttachStateListener);
+            }
+            mHeader = child;
+            mHeader.addOnAttachStateChangeListener(mHeaderAttachStateListener);
+            mController.setHeaderView(child);
+        }
+
+        mController.onHostLayout();
+        if (!mController.isFirstLayoutDone()) {
+            // Same as the layout form, the first layout is handled once the layout pass is over
+            child.removeCallbacks(mFirstLayoutRunnable);
+            child.post(mFirstLayoutRunnable);
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean onStartNestedScroll(CoordinatorLayout coordinatorLayout, View child, View directTargetChild,
+                                       View target, int axes, int type) {
+        // The flings are handled by onNestedPreFling(), just as in the layout form
+        return type == ViewCompat.TYPE_TOUCH && mHeader != null && mController.isFirstLayoutDone()
+                && mController.onStartNestedScroll(axes);
+    }
+
+    @Override
+    public void onStopNestedScroll(CoordinatorLayout coordinatorLayout, View child, View target, int type) {
+        if (type == ViewCompat.TYPE_TOUCH) {
+            mController.onStopNestedScroll();
+        }
+    }
+
+    @Override
+    public void onNestedScroll(CoordinatorLayout coordinatorLayout, View child, View target, int dxConsumed,
+                               int dyConsumed, int dxUnconsumed, int dyUnconsumed, int type) {
+        if (type == ViewCompat.TYPE_TOUCH) {
+            mController.onNestedScroll(dyUnconsumed);
+        }
+    }
+
+    @Override
+    public void onNestedPreScroll(CoordinatorLayout coordinatorLayout, View child, View target, int dx, int dy,
+                                  int[] consumed, int type) {
+        if (type == ViewCompat.TYPE_TOUCH) {
+            mController.onNestedPreScroll(dx, dy, consumed);
+        }
+    }
+
+    @Override
+    public boolean onNestedFling(CoordinatorLayout coordinatorLayout, View child, View target, float velocityX,
+                                 float velocityY, boolean consumed) {
+        return !consumed;
+    }
+
+    @Override
+    public boolean onNestedPreFling(CoordinatorLayout coordinatorLayout, View child, View target, float velocityX,
+                                    float velocityY) {
+        return mController.onNestedPreFling(velocityX, velocityY);
+    }
+}
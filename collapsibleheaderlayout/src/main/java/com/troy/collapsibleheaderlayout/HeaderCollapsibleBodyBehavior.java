@@ -0,0 +1,66 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.content.Context;
+import android.support.design.widget.CoordinatorLayout;
+import android.util.AttributeSet;
+import android.view.View;
+
+import java.util.List;
+
+/**
+ * Lays the body view out right below the header driven by {@link HeaderCollapsibleBehavior}, and gives it the rest
+ * of the CoordinatorLayout height, just as the body of {@link HeaderCollapsibleLayout}.
+ */
+public class HeaderCollapsibleBodyBehavior extends CoordinatorLayout.Behavior<View> {
+
+    public HeaderCollapsibleBodyBehavior() {
+    }
+
+    public HeaderCollapsibleBodyBehavior(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    @Override
+    public boolean layoutDependsOn(CoordinatorLayout parent, View child, View dependency) {
+        return HeaderCollapsibleBehavior.from(dependency) != null;
+    }
+
+    @Override
+    public boolean onMeasureChild(CoordinatorLayout parent, View child, int parentWidthMeasureSpec, int widthUsed,
+                                  int parentHeightMeasureSpec, int heightUsed) {
+        View header = findHeader(parent, child);
+        if (header == null) {
+            return false;
+        }
+
+        // The header has been measured already, as the dependencies are measured first
+        parent.onMeasureChild(child, parentWidthMeasureSpec, widthUsed, parentHeightMeasureSpec,
+                heightUsed + header.getMeasuredHeight());
+        return true;
+    }
+
+    @Override
+    public boolean onLayoutChild(CoordinatorLayout parent, View child, int layoutDirection) {
+        View header = findHeader(parent, child);
+        if (header == null) {
+            return false;
+        }
+
+        final CoordinatorLayout.LayoutParams lp = (CoordinatorLayout.LayoutParams) child.getLayoutParams();
+        final int left = parent.getPaddingLeft() + lp.leftMargin;
+        final int top = header.getBottom() + lp.topMargin;
+        child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+        return true;
+    }
+
+    private static View findHeader(CoordinatorLayout parent, View child) {
+        List<View> dependencies = parent.getDependencies(child);
+        for (int index = 0; index < dependencies.size(); index++) {
+            if (HeaderCollapsibleBehavior.from(dependencies.get(index)) != null) {
+                return dependencies.get(index);
+            }
+        }
+
+        return null;
+    }
+}
@@ -1,15 +1,11 @@
 package com.troy.collapsibleheaderlayout;
 
-import android.animation.Animator;
-import android.animation.Animator.AnimatorListener;
-import android.animation.ObjectAnimator;
-import android.animation.TypeEvaluator;
-import android.animation.ValueAnimator;
-import android.animation.ValueAnimator.AnimatorUpdateListener;
+import android.arch.lifecycle.LifecycleOwner;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.os.Build;
-import android.os.Looper;
+import android.support.annotation.IdRes;
 import android.support.annotation.IntDef;
 import android.support.annotation.Nullable;
 import android.support.annotation.UiThread;
@@ -21,19 +17,17 @@ import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewConfiguration;
-import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import android.view.ViewTreeObserver.OnGlobalLayoutListener;
-import android.view.animation.DecelerateInterpolator;
 import android.widget.LinearLayout;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.PrintWriter;
 
 /*
  * To function correctly, the bottom view has to be an implementation of NestedScrollingChild.
  * If not, please wrap your bottom view with a NestedScrollView.
+ * The header and the body may be any kind of view. Inside a CoordinatorLayout, HeaderCollapsibleBehavior
+ * offers the same collapse without this wrapper.
  */
 public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrollingParent,
         NestedScrollingChild, OnGlobalLayoutListener {
@@ -42,6 +36,14 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
         void onViewFinishInflate();
     }
 
+    public interface OnRefreshListener {
+        /**
+         * Called when the header has been overshot beyond the refresh trigger distance and released. The header
+         * then holds at the refreshing height until {@link #setRefreshing(boolean)} is called with false.
+         */
+        void onRefresh();
+    }
+
     @SuppressWarnings("WeakerAccess")
     @IntDef({COLLAPSING, COLLAPSED, EXPANDING, EXPANDED})
     public @interface HeaderStatus {
@@ -64,35 +66,57 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
      */
     public static final int EXPANDED = 4;
 
-    protected boolean mIsEnabled = true;
-    protected boolean mIsScrollingDown;
-    protected boolean mIsBeingDragged;
-    @HeaderStatus
-    protected int mCurHeaderStatus;
+    @SuppressWarnings("WeakerAccess")
+    @IntDef({CHAIN_PARENT_FIRST, CHAIN_SELF_FIRST, CHAIN_SPLIT})
+    public @interface ChainingPolicy {
+    }
+
+    /**
+     * Nested scroll chaining - the scrolling parent is offered every pre-scroll delta first, this layout only handles
+     * what it leaves
+     */
+    public static final int CHAIN_PARENT_FIRST = 0;
+    /**
+     * Nested scroll chaining - this layout handles every pre-scroll delta first, the scrolling parent is only offered
+     * what it leaves
+     */
+    public static final int CHAIN_SELF_FIRST = 1;
+    /**
+     * Nested scroll chaining - this layout collapses before the scrolling parent does, and the scrolling parent
+     * handles the downward pre-scroll deltas before this layout
+     */
+    public static final int CHAIN_SPLIT = 2;
+
+    @SuppressWarnings("WeakerAccess")
+    @IntDef({CULLING_NONE, CULLING_DRAW, CULLING_DRAW_AND_MEASURE})
+    public @interface CullingMode {
+    }
+
+    /**
+     * Culling mode - keep the whole header subtree alive while collapsed
+     */
+    public static final int CULLING_NONE = 0;
+    /**
+     * Culling mode - while collapsed, the header children hidden behind or outside the sticky footer are made
+     * INVISIBLE, so they are not drawn
+     */
+    public static final int CULLING_DRAW = 1;
+    /**
+     * Culling mode - while collapsed, the header children hidden behind or outside the sticky footer are made
+     * GONE, so they are neither measured nor drawn. The sticky footer must not be positioned relative to them.
+     */
+    public static final int CULLING_DRAW_AND_MEASURE = 2;
+
 
     private Context mContext;
     private OnViewFinishInflateListener mViewFinishInflateListener;
-    private List<OnHeaderStatusChangedListener> mHeaderStatusChangedListeners;
-    private OnHeaderStatusChangedListener mSingleHeaderStatusChangedListener;
-    private int mOrgHeaderHeight = -1;
-    private int mOrgHeaderHeightBackup = -1;
-    private int mStickyFooterLayoutId = -1;
-    private int mStickyFooterHeight = 0;
-    private int mOvershootDistance;
-    private boolean mSupportFlingAction;
-    private boolean mAutoDrawerModeEnabled = true;
-    private boolean mDefaultExpand = true;
-    private ViewGroup mTopView;
-    private ViewGroup mBottomView;
+    private View mTopView;
+    private View mBottomView;
 
+    private HeaderCollapseController mController;
+    private HeaderDebugHud mDebugHud;
     private NestedScrollingParentHelper mParentHelper;
     private NestedScrollingChildHelper mChildHelper;
-    private Animator mBounceBackForOvershooting;
-    private int lastHeaderHeight;  // Record of header height each time before it changes
-
-    private float lastVelocityY = -0.1F;
-    private int unconsumedDy;
-    private float touchSlop;
 
     public HeaderCollapsibleLayout(Context context) {
         super(context);
@@ -115,14 +139,46 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
     private void init(Context context, AttributeSet attrs) {
         mContext = context;
 
-        mCurHeaderStatus = EXPANDED;
-
         setOrientation(VERTICAL);
 
+        mController = new HeaderCollapseController(context, new HeaderCollapseController.Host() {
+            @Override
+            public View getHostView() {
+                return HeaderCollapsibleLayout.this;
+            }
+
+            @Override
+            public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow) {
+                return HeaderCollapsibleLayout.this.dispatchNestedPreScroll(dx, dy, consumed, offsetInWindow);
+            }
+
+            @Override
+            public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed,
+                                                int[] offsetInWindow) {
+                return HeaderCollapsibleLayout.this.dispatchNestedScroll(dxConsumed, dyConsumed, dxUnconsumed,
+                        dyUnconsumed, offsetInWindow);
+            }
+
+            @Override
+            public boolean dispatchNestedPreFling(float velocityX, float velocityY) {
+                return HeaderCollapsibleLayout.this.dispatchNestedPreFling(velocityX, velocityY);
+            }
+
+            @Override
+            public void onHeaderFirstLayout() {
+                if (mViewFinishInflateListener != null) {
+                    mViewFinishInflateListener.onViewFinishInflate();
+                }
+
+                onFirstLayout();
+            }
+        });
+
         initStyleable(context, attrs);
 
         if (mTopView != null) {
             addView(mTopView);
+            mController.setHeaderView(mTopView);
         }
 
         if (mBottomView != null) {
@@ -131,13 +187,15 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
 
         mParentHelper = new NestedScrollingParentHelper(this);
         mChildHelper = new NestedScrollingChildHelper(this);
-        touchSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
         setNestedScrollingEnabled(true);
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        if (mDebugHud != null) {
+            mDebugHud.start(this);
+        }
 
         ViewTreeObserver observer = getViewTreeObserver();
         if (observer.isAlive()) {
@@ -148,6 +206,10 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        mController.onHostDetached();
+        if (mDebugHud != null) {
+            mDebugHud.stop();
+        }
 
         ViewTreeObserver observer = getViewTreeObserver();
         if (!observer.isAlive()) {
@@ -163,47 +225,23 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
 
     @Override
     final public void onGlobalLayout() {
-        if (mOrgHeaderHeight != -1) {
-            return;
-        }
-
-        if (mTopView == null || mTopView.getMeasuredHeight() == 0) {
-            return;
-        }
-
-        mOrgHeaderHeight = mTopView.getMeasuredHeight();
-        if (mOvershootDistance < 0) {
-            mOvershootDistance = 0;
-        } else if (mOvershootDistance > (Integer.MAX_VALUE - getHeight())) {
-            getHeight();
-        }
-
-        if (mStickyFooterLayoutId != -1) {
-            View overlayFooter = mTopView.findViewById(mStickyFooterLayoutId);
-
-            if (overlayFooter != null) {
-                mStickyFooterHeight = overlayFooter.getMeasuredHeight();
-                mStickyFooterHeight = Math.min(mOrgHeaderHeight, mStickyFooterHeight);
-            }
-        }
-
-        mOrgHeaderHeightBackup = mOrgHeaderHeight;
-
-        if (mViewFinishInflateListener != null) {
-            mViewFinishInflateListener.onViewFinishInflate();
-        }
-
-        onFirstLayout();
-
-        requestLayout();
-
-        if (!mDefaultExpand) {
-            collapse();
-        }
+        mController.onHeaderLaidOut();
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        mController.onHostMeasure(MeasureSpec.getSize(widthMeasureSpec), MeasureSpec.getSize(heightMeasureSpec));
+
+        final int headerScrollRange = mController.getHeaderScrollRange();
+        if (headerScrollRange > 0 && MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.EXACTLY) {
+            // A tall header is laid out at its full height, leave the body the room it has once scrolled through
+            final int height = MeasureSpec.getSize(heightMeasureSpec);
+            super.onMeasure(widthMeasureSpec, MeasureSpec.makeMeasureSpec(height + headerScrollRange,
+                    MeasureSpec.EXACTLY));
+            setMeasuredDimension(getMeasuredWidthAndState(), height);
+            return;
+        }
+
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
 //        if (mOrgHeaderHeight == -1) {
 //            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
@@ -216,6 +254,27 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
 //        super.onMeasure(widthMeasureSpec, MeasureSpec.makeMeasureSpec(height + mOrgHeaderHeight, MeasureSpec.EXACTLY));
     }
 
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+
+        mController.onHostLayout();
+        if (mDebugHud != null) {
+            mDebugHud.onLayoutPass();
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+
+        if (mDebugHud != null) {
+            // Drawn over the children, after them, so it also works before onDrawForeground() exists
+            mDebugHud.draw(canvas, mController.getCurrentHeaderStatus(),
+                    mTopView != null ? mTopView.getHeight() : 0, mController.getCollapsedOffset());
+        }
+    }
+
     @Override
     protected void onFinishInflate() {
         super.onFinishInflate();
@@ -224,35 +283,57 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
             return;
         }
 
+        // The first two children are the header and the body, whatever kind of views they are
         int childCount = getChildCount();
         View child;
-        ViewGroup first, second = first = null;
+        View first, second = first = null;
         for (int index = 0; index < childCount; index++) {
             child = getChildAt(index);
-            if (!(child instanceof ViewGroup)) {
+            if (child == mTopView || child == mBottomView) {
                 continue;
             }
 
             if (first == null) {
-                first = (ViewGroup) child;
+                first = child;
                 continue;
             }
 
-            second = (ViewGroup) child;
+            second = child;
             break;
         }
 
-        if (mTopView == null && first != null && first != mBottomView) {
+        if (mTopView == null && first != null) {
             mTopView = first;
+            first = second;
+            mController.setHeaderView(mTopView);
         }
-        if (mBottomView == null && second != null && second != mTopView) {
-            mBottomView = second;
+        if (mBottomView == null && first != null) {
+            mBottomView = first;
         }
     }
 
     protected void onFirstLayout() {
     }
 
+    /**
+     * For subclasses, replaces the protected field <code>mIsBeingDragged</code> of the 2.0 releases, since the state
+     * of the collapse now lives in the {@link HeaderCollapseController} shared with {@link HeaderCollapsibleBehavior}.
+     *
+     * @return whether the user is dragging the body
+     */
+    protected boolean isBeingDragged() {
+        return mController.mIsBeingDragged;
+    }
+
+    /**
+     * For subclasses, replaces the protected field <code>mIsScrollingDown</code> of the 2.0 releases.
+     *
+     * @return whether the last nested pre-scroll was towards the top of the body
+     */
+    protected boolean isScrollingDown() {
+        return mController.mIsScrollingDown;
+    }
+
     private void initStyleable(Context context, AttributeSet attrs) {
         if (attrs == null) {
             return;
@@ -263,36 +344,18 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
         if (a.hasValue(R.styleable.HeaderCollapsibleLayout_topPanelLayout)) {
             int headerLayout = a.getResourceId(R.styleable.HeaderCollapsibleLayout_topPanelLayout, -1);
             if (headerLayout != -1) {
-                mTopView = (ViewGroup) LayoutInflater.from(mContext).inflate(headerLayout, this, false);
+                mTopView = LayoutInflater.from(mContext).inflate(headerLayout, this, false);
             }
         }
 
         if (a.hasValue(R.styleable.HeaderCollapsibleLayout_bottomPanelLayout)) {
             int bodyLayout = a.getResourceId(R.styleable.HeaderCollapsibleLayout_bottomPanelLayout, -1);
             if (bodyLayout != -1) {
-                mBottomView = (ViewGroup) LayoutInflater.from(mContext).inflate(bodyLayout, this, false);
+                mBottomView = LayoutInflater.from(mContext).inflate(bodyLayout, this, false);
             }
         }
 
-        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_overlayFooterId)) {
-            mStickyFooterLayoutId = a.getResourceId(R.styleable.HeaderCollapsibleLayout_overlayFooterId, -1);
-        }
-
-        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_supportFlingAction)) {
-            mSupportFlingAction = a.getBoolean(R.styleable.HeaderCollapsibleLayout_supportFlingAction, false);
-        }
-
-        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_autoDrawerModeEnabled)) {
-            mAutoDrawerModeEnabled = a.getBoolean(R.styleable.HeaderCollapsibleLayout_autoDrawerModeEnabled, true);
-        }
-
-        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_defaultExpand)) {
-            mDefaultExpand = a.getBoolean(R.styleable.HeaderCollapsibleLayout_defaultExpand, true);
-        }
-
-        if (a.hasValue(R.styleable.HeaderCollapsibleLayout_overshootDistance)) {
-            mOvershootDistance = a.getInteger(R.styleable.HeaderCollapsibleLayout_overshootDistance, 0);
-        }
+        mController.readAttributes(context, a);
 
         a.recycle();
     }
@@ -301,14 +364,21 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
     // ▼ Public methods starts
     ///////////////////////////////////////////////////////////////////////////
 
+    /**
+     * @return the collapse engine of this layout, which is the one {@link HeaderCollapsibleBehavior} uses as well
+     */
+    public HeaderCollapseController getController() {
+        return mController;
+    }
+
     @Deprecated
     public void setOnHeaderStatusChangedListener(OnHeaderStatusChangedListener callback) {
-        mSingleHeaderStatusChangedListener = callback;
+        mController.setOnHeaderStatusChangedListener(callback);
     }
 
     @Deprecated
     public void removeOnHeaderStatusChangedListener() {
-        mSingleHeaderStatusChangedListener = null;
+        mController.removeOnHeaderStatusChangedListener();
     }
 
     /**
@@ -319,24 +389,41 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
      */
     @UiThread
     public void addOnHeaderStatusChangedListener(OnHeaderStatusChangedListener callback) {
-        if (Thread.currentThread() != Looper.getMainLooper().getThread()) {
-            throw new IllegalStateException("Should call this method on UiThread only.");
-        }
+        mController.addOnHeaderStatusChangedListener(callback);
+    }
 
-        if (mHeaderStatusChangedListeners == null) {
-            mHeaderStatusChangedListeners = new ArrayList<>();
-        }
-        if (mHeaderStatusChangedListeners.contains(callback)) {
-            return;
-        }
-        mHeaderStatusChangedListeners.add(callback);
+    /**
+     * Add header status observe listener, optionally held by a weak reference only, which is then dropped once
+     * garbage collected. The caller has to keep a strong reference to it meanwhile.
+     *
+     * @param callback header status changed observer
+     * @param weakly   whether to hold the listener weakly
+     * @throws IllegalStateException Call this on work thread
+     */
+    @UiThread
+    public void addOnHeaderStatusChangedListener(OnHeaderStatusChangedListener callback, boolean weakly) {
+        mController.addOnHeaderStatusChangedListener(callback, weakly);
+    }
+
+    /**
+     * Add header status observe listener, which is removed when the owner gets destroyed, or when this layout gets
+     * detached from its window, whichever comes first. Register it again when the layout is attached again.
+     * <p>
+     * A Fragment outlives its views, with support 28 and later pass its <code>getViewLifecycleOwner()</code> rather
+     * than the Fragment itself. Before that, the detach from the window still releases this layout along with the
+     * destroyed view hierarchy.
+     *
+     * @param owner    the Activity showing this layout, or the view lifecycle owner of the Fragment showing it
+     * @param callback header status changed observer
+     * @throws IllegalStateException Call this on work thread
+     */
+    @UiThread
+    public void addOnHeaderStatusChangedListener(LifecycleOwner owner, OnHeaderStatusChangedListener callback) {
+        mController.addOnHeaderStatusChangedListener(owner, callback);
     }
 
     public void removeOnHeaderStatusChangedListener(OnHeaderStatusChangedListener listener) {
-        if (mHeaderStatusChangedListeners == null) {
-            return;
-        }
-        mHeaderStatusChangedListeners.remove(listener);
+        mController.removeOnHeaderStatusChangedListener(listener);
     }
 
     public void setOnViewFinishInflateListener(OnViewFinishInflateListener listener) {
@@ -348,141 +435,474 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
     }
 
     /**
-     * Reset status.
+     * Reset status, and expand the header back if it has been laid out already.
      */
     public void reset() {
-        mCurHeaderStatus = EXPANDED;
+        mController.reset();
+    }
+
+    /**
+     * Get this layout ready to be bound to another item when used within a RecyclerView item, typically from
+     * <code>onViewRecycled()</code>. The running animations are dropped without any callback, and any drag, fling,
+     * overshoot or refresh in progress is forgotten. The measurements of the header are kept.
+     */
+    public void recycle() {
+        mController.recycle();
+    }
+
+    /**
+     * Apply the header state of the item being bound, typically from <code>onBindViewHolder()</code>. No layout is
+     * requested, the header is simply measured again along with the item by the coming layout pass of the
+     * RecyclerView.
+     *
+     * @param collapsedOffset the collapsed part of the header in px, 0 when expanded
+     * @param status          the header status of the item
+     * @param contentChanged  whether the header content of this item may have another size than the previous one,
+     *                        then the header is measured from scratch on the next layout, at the cost of calling
+     *                        {@link #onFirstLayout()} again
+     */
+    public void bind(int collapsedOffset, @HeaderStatus int status, boolean contentChanged) {
+        mController.bind(collapsedOffset, status, contentChanged);
     }
 
     @HeaderStatus
     public int getCurrentHeaderStatus() {
-        return mCurHeaderStatus;
+        return mController.getCurrentHeaderStatus();
     }
 
     public void collapse() {
-        changeHeaderHeightTo(mStickyFooterHeight);
+        mController.collapse();
+    }
 
-        mCurHeaderStatus = COLLAPSED;
+    public void smoothCollapse() {
+        mController.smoothCollapse();
+    }
 
-        lastVelocityY = 0.1F;  // To make sure next fling action performs well
+    public View getTopView() {
+        return mTopView;
     }
 
-    public void smoothCollapse() {
-        smoothChangeHeaderHeightTo(mStickyFooterHeight, new AnimatorListener() {
-            @Override
-            public void onAnimationStart(Animator animation) {
-                mCurHeaderStatus = COLLAPSING;
+    public void expand() {
+        mController.expand();
+    }
 
-                if (mHeaderStatusChangedListeners != null) {
-                    for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                        l.onHeaderStartCollapsing();
-                    }
-                }
+    public void smoothExpand() {
+        mController.smoothExpand();
+    }
 
-                if (mSingleHeaderStatusChangedListener != null) {
-                    mSingleHeaderStatusChangedListener.onHeaderStartCollapsing();
-                }
-            }
+    /**
+     * Move the header to the given status and scroll the body in one animation, with a single update per frame,
+     * to deep link to some content for instance. A touch on the body cancels it.
+     *
+     * @param targetStatus {@link #EXPANDED} or {@link #COLLAPSED}
+     * @param bodyScroller how the body scrolls along with the header, see {@link BodyScroller#scrollTo(View, int)}
+     *                     and {@link RecyclerViewBodyScroller}, or null to only move the header
+     * @param listener     notified of the combined progress, or null
+     */
+    public void smoothChangeTo(@HeaderStatus int targetStatus, @Nullable BodyScroller bodyScroller,
+                               @Nullable OnCoordinatedScrollListener listener) {
+        mController.smoothChangeTo(targetStatus, bodyScroller, listener);
+    }
 
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                mCurHeaderStatus = COLLAPSED;
+    /**
+     * Add intermediate heights the header snaps to, on top of the expanded and collapsed ends. The auto drawer mode
+     * snaps to the nearest anchor in the scrolling direction, and a fling moves the header to the next anchor.
+     * The header status only settles to {@link #EXPANDED} or {@link #COLLAPSED} at the two ends.
+     *
+     * @param anchorHeights header heights in px, in any order, those out of the collapse range are ignored
+     */
+    public void setSnapAnchors(int... anchorHeights) {
+        mController.setSnapAnchors(anchorHeights);
+    }
 
-                if (mHeaderStatusChangedListeners != null) {
-                    for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                        l.onHeaderCollapsed();
-                    }
-                }
+    public int[] getSnapAnchors() {
+        return mController.getSnapAnchors();
+    }
 
-                if (mSingleHeaderStatusChangedListener != null) {
-                    mSingleHeaderStatusChangedListener.onHeaderCollapsed();
-                }
-            }
+    /**
+     * @param anchorIndex the index of the anchor within {@link #getSnapAnchors()}
+     */
+    public void smoothSnapToAnchor(int anchorIndex) {
+        mController.smoothSnapToAnchor(anchorIndex);
+    }
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
-            }
+    public void addOnAnchorReachedListener(OnAnchorReachedListener listener) {
+        mController.addOnAnchorReachedListener(listener);
+    }
 
-            @Override
-            public void onAnimationRepeat(Animator animation) {
-            }
-        });
+    public void removeOnAnchorReachedListener(OnAnchorReachedListener listener) {
+        mController.removeOnAnchorReachedListener(listener);
+    }
 
-        lastVelocityY = 0.1F;  // To make sure next fling action performs well
+    /**
+     * Collapse the header within the same layout pass as the window resize caused by the soft keyboard showing up,
+     * and expand it back once the keyboard is gone. Needs <code>adjustResize</code>, and replaces a call to
+     * {@link #smoothCollapse()} when the header gets focus.
+     */
+    public void setImeSyncEnabled(boolean enabled) {
+        mController.setImeSyncEnabled(enabled);
     }
 
-    public View getTopView() {
-        return mTopView;
+    public boolean isImeSyncEnabled() {
+        return mController.isImeSyncEnabled();
     }
 
-    public void expand() {
-        changeHeaderHeightTo(mOrgHeaderHeight);
+    /**
+     * Defer the inflation of the heavy part of the header while the layout starts collapsed, with
+     * <code>app:defaultExpand="false"</code>. That part sits in a {@link android.view.ViewStub} of the header, which
+     * is inflated on the first expand, or once the main thread gets idle after the first layout when prefetching.
+     * Until then, the collapse range relies on the height measured by an earlier instance, or on the expected one.
+     * <p>
+     * Pinned sections and collapsible stages should stay out of the deferred part, effects are bound once it is
+     * inflated. Call this before the first layout, or use <code>app:lazyHeaderStubId</code>,
+     * <code>app:lazyHeaderHeight</code> and <code>app:lazyHeaderPrefetch</code>.
+     *
+     * @param stubId         the id of the ViewStub within the header
+     * @param expectedHeight the full height of the header once inflated, in px
+     * @param prefetch       whether to inflate it when idle, rather than on the first expand only
+     */
+    public void setLazyHeader(@IdRes int stubId, int expectedHeight, boolean prefetch) {
+        mController.setLazyHeader(stubId, expectedHeight, prefetch);
+    }
 
-        mCurHeaderStatus = EXPANDED;
+    public boolean isLazyHeaderInflated() {
+        return mController.isLazyHeaderInflated();
+    }
 
-        lastVelocityY = -0.1F;  // To make sure next fling action performs well
+    /**
+     * Let the heavy content of the header go while it is collapsed, and bring it back before it expands again.
+     * The hook releases it when the header has been collapsed for the release timeout, or on
+     * {@link android.content.ComponentCallbacks2#onTrimMemory(int)} from TRIM_MEMORY_RUNNING_LOW on, and restores it
+     * as soon as the header starts expanding.
+     *
+     * @param hook the hook, or null to stop releasing
+     */
+    public void setHeaderResourceHook(@Nullable HeaderResourceHook hook) {
+        mController.setHeaderResourceHook(hook);
     }
 
-    public void smoothExpand() {
-        smoothChangeHeaderHeightTo(mOrgHeaderHeight, new AnimatorListener() {
-            @Override
-            public void onAnimationStart(Animator animation) {
-                mCurHeaderStatus = EXPANDING;
+    /**
+     * @param timeoutMillis how long the header stays collapsed before its resources are released, or a negative
+     *                      value to only release them on low memory, which is the default
+     */
+    public void setHeaderReleaseTimeout(long timeoutMillis) {
+        mController.setHeaderReleaseTimeout(timeoutMillis);
+    }
 
-                if (mHeaderStatusChangedListeners != null) {
-                    for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                        l.onHeaderStartExpanding();
-                    }
-                }
+    public boolean isHeaderResourcesReleased() {
+        return mController.isHeaderResourcesReleased();
+    }
 
-                if (mSingleHeaderStatusChangedListener != null) {
-                    mSingleHeaderStatusChangedListener.onHeaderStartExpanding();
-                }
-            }
+    /**
+     * Quick return mode: the header slides back in as soon as the body is scrolled back, wherever it is, rather than
+     * only once the body has reached its top. The header takes the delta before the body, within the same frame,
+     * and snaps and reports its status just as when dragged at the top.
+     */
+    public void setQuickReturnEnabled(boolean quickReturnEnabled) {
+        mController.setQuickReturnEnabled(quickReturnEnabled);
+    }
 
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                mCurHeaderStatus = EXPANDED;
+    public boolean isQuickReturnEnabled() {
+        return mController.isQuickReturnEnabled();
+    }
 
-                if (mHeaderStatusChangedListeners != null) {
-                    for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                        l.onHeaderExpanded();
-                    }
-                }
+    /**
+     * Tall header mode, for headers taller than this layout, in landscape typically. The header is laid out at its
+     * full height and a drag first scrolls through it, then collapses it once its bottom is reached, all within the
+     * nested scroll handling of this layout. This replaces a NestedScrollView inside the header, which joins the
+     * nested scroll chain and measures the header content once more on each pass.
+     * <p>
+     * The snap anchors and the auto drawer mode apply to the collapse only, a release in the middle of the header
+     * content leaves it there. Changing the mode after the first layout measures the header again, expanded.
+     */
+    public void setTallHeaderEnabled(boolean tallHeaderEnabled) {
+        mController.setTallHeaderEnabled(tallHeaderEnabled);
+    }
 
-                if (mSingleHeaderStatusChangedListener != null) {
-                    mSingleHeaderStatusChangedListener.onHeaderExpanded();
-                }
-            }
+    public boolean isTallHeaderEnabled() {
+        return mController.isTallHeaderEnabled();
+    }
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
-            }
+    public void disableCollapsing() {
+        mController.disableCollapsing();
+    }
 
-            @Override
-            public void onAnimationRepeat(Animator animation) {
-            }
-        });
+    public void enableCollapsing() {
+        mController.enableCollapsing();
+    }
 
-        lastVelocityY = -0.1F;  // To make sure next fling action performs well
+    public boolean isEnabled() {
+        // Called by View before the controller exists
+        return mController == null || mController.isCollapsingEnabled();
     }
 
-    public void disableCollapsing() {
-        if (mOrgHeaderHeight != 0) {
-            mOrgHeaderHeightBackup = mOrgHeaderHeight;
-            mOrgHeaderHeight = 0;
+    /**
+     * Turn the overshoot action into a pull-to-refresh trigger. Requires a positive overshoot distance.
+     *
+     * @param listener called once the header has been overshot beyond the trigger distance and released,
+     *                 or null to disable refreshing
+     */
+    public void setOnRefreshListener(@Nullable OnRefreshListener listener) {
+        mController.setOnRefreshListener(listener);
+    }
+
+    /**
+     * @param triggerDistance the overshoot distance in px that triggers a refresh on release
+     */
+    public void setRefreshTriggerDistance(int triggerDistance) {
+        mController.setRefreshTriggerDistance(triggerDistance);
+    }
+
+    /**
+     * @param holdDistance the overshoot distance in px the header holds at while refreshing, defaults to the
+     *                     trigger distance
+     */
+    public void setRefreshHoldDistance(int holdDistance) {
+        mController.setRefreshHoldDistance(holdDistance);
+    }
+
+    /**
+     * Show or release the refreshing state. Unlike a refresh triggered by the user, showing it from here does not
+     * call the {@link OnRefreshListener}.
+     */
+    public void setRefreshing(boolean refreshing) {
+        mController.setRefreshing(refreshing);
+    }
+
+    public boolean isRefreshing() {
+        return mController.isRefreshing();
+    }
+
+    /**
+     * Set how the nested scroll deltas are shared with the scrolling parent of this layout, if any. The unconsumed
+     * deltas sent after the body has scrolled are always handled by this layout first, and the rest is passed on.
+     *
+     * @param chainingPolicy one of {@link #CHAIN_PARENT_FIRST}, {@link #CHAIN_SELF_FIRST} and {@link #CHAIN_SPLIT}
+     */
+    public void setNestedScrollChainingPolicy(@ChainingPolicy int chainingPolicy) {
+        mController.setNestedScrollChainingPolicy(chainingPolicy);
+    }
+
+    @ChainingPolicy
+    public int getNestedScrollChainingPolicy() {
+        return mController.getNestedScrollChainingPolicy();
+    }
+
+    /**
+     * Pin a section of the header, which stays visible while the header collapses. The pinned sections are
+     * stacked at the bottom of the collapsed header, the lowest pin order on top, and their heights are tracked
+     * so the collapse range follows them whenever they change.
+     *
+     * @param section  a descendant of the header view
+     * @param pinOrder the stacking order, the section with the highest one sits at the very bottom
+     */
+    public void addPinnedSection(View section, int pinOrder) {
+        mController.addPinnedSection(section, pinOrder);
+    }
+
+    public void removePinnedSection(View section) {
+        mController.removePinnedSection(section);
+    }
+
+    /**
+     * Append a collapsible stage to the header. The stages collapse one after another in the order they were added,
+     * each of them being moved up by its collapsed offset, while the header still changes its height once per frame.
+     * Stages are expected to be laid out from top to bottom in the same order, and should not be pinned sections.
+     *
+     * @param stage a descendant of the header view
+     */
+    public void addCollapsibleStage(View stage) {
+        mController.addCollapsibleStage(stage);
+    }
+
+    /**
+     * Add an effect mapping a view property of a header descendant onto the collapse of the header, see
+     * {@link HeaderEffect}. Effects can also be declared with <code>app:headerEffects</code>.
+     */
+    public void addHeaderEffect(HeaderEffect effect) {
+        mController.addHeaderEffect(effect);
+    }
+
+    public void removeHeaderEffect(HeaderEffect effect) {
+        mController.removeHeaderEffect(effect);
+    }
+
+    public void clearHeaderEffects() {
+        mController.clearHeaderEffects();
+    }
+
+    public void clearCollapsibleStages() {
+        mController.clearCollapsibleStages();
+    }
+
+    public int getCollapsibleStageCount() {
+        return mController.getCollapsibleStageCount();
+    }
+
+    @HeaderStatus
+    public int getStageStatus(int stageIndex) {
+        return mController.getStageStatus(stageIndex);
+    }
+
+    public int getStageOffset(int stageIndex) {
+        return mController.getStageOffset(stageIndex);
+    }
+
+    public void addOnStageChangedListener(OnStageChangedListener listener) {
+        mController.addOnStageChangedListener(listener);
+    }
+
+    public void removeOnStageChangedListener(OnStageChangedListener listener) {
+        mController.removeOnStageChangedListener(listener);
+    }
+
+    /**
+     * @return the height the header collapses to, which is the total height of the pinned sections
+     */
+    public int getStickyFooterHeight() {
+        return mController.getStickyFooterHeight();
+    }
+
+    /**
+     * Set how the header subtree is culled while the header stays collapsed. The culled views are brought back
+     * on the first expand frame, before the header grows.
+     *
+     * @param cullingMode one of {@link #CULLING_NONE}, {@link #CULLING_DRAW} and {@link #CULLING_DRAW_AND_MEASURE}
+     */
+    public void setCollapsedHeaderCulling(@CullingMode int cullingMode) {
+        mController.setCollapsedHeaderCulling(cullingMode);
+    }
+
+    @CullingMode
+    public int getCollapsedHeaderCulling() {
+        return mController.getCollapsedHeaderCulling();
+    }
+
+    /**
+     * Start recording the header status transitions into a ring log, which keeps the latest
+     * <code>capacity</code> entries. Recording is free of allocations, and costs nothing at all while disabled.
+     *
+     * @param capacity max count of the kept transitions
+     */
+    public void enableTransitionLog(int capacity) {
+        mController.enableTransitionLog(capacity);
+    }
+
+    public void disableTransitionLog() {
+        mController.disableTransitionLog();
+    }
+
+    /**
+     * @return the transition log, or null if it has not been enabled
+     */
+    @Nullable
+    public HeaderTransitionLog getTransitionLog() {
+        return mController.getTransitionLog();
+    }
+
+    /**
+     * Draw a debug overlay over this layout, showing the header status, height and collapsed offset, the layout
+     * passes per second, the listener dispatch time of the last drawn frame and a sparkline of the recent frame
+     * times. The frame times are sampled from a frame callback posted on every frame while it is enabled, so keep
+     * it to debug builds.
+     */
+    public void setDebugHudEnabled(boolean enabled) {
+        if (enabled == (mDebugHud != null)) {
+            return;
         }
 
-        mIsEnabled = false;
+        if (mDebugHud != null) {
+            mDebugHud.stop();
+        }
+        mDebugHud = enabled ? new HeaderDebugHud(mContext) : null;
+        mController.setDebugHud(mDebugHud);
+        if (mDebugHud != null && ViewCompat.isAttachedToWindow(this)) {
+            mDebugHud.start(this);
+        }
+        invalidate();
     }
 
-    public void enableCollapsing() {
-        mOrgHeaderHeight = mOrgHeaderHeightBackup;
-        mIsEnabled = true;
+    public boolean isDebugHudEnabled() {
+        return mDebugHud != null;
     }
 
-    public boolean isEnabled() {
-        return mIsEnabled;
+    /**
+     * Drive the header animations from a virtual clock in JVM tests, see {@link HeaderVirtualClock}. For the
+     * instrumented tests, register a {@link HeaderIdlingResource} instead.
+     *
+     * @param clock the clock, or null to go back to the display frames
+     */
+    public void setAnimationClock(@Nullable HeaderVirtualClock clock) {
+        mController.setAnimationClock(clock);
+    }
+
+    @Nullable
+    public HeaderVirtualClock getAnimationClock() {
+        return mController.getAnimationClock();
+    }
+
+    /**
+     * Profile every listener callback, see {@link HeaderListenerProfiler}.
+     *
+     * @param profiler the profiler to report to, or null to stop profiling
+     */
+    public void setListenerProfiler(@Nullable HeaderListenerProfiler profiler) {
+        mController.setListenerProfiler(profiler);
+    }
+
+    @Nullable
+    public HeaderListenerProfiler getListenerProfiler() {
+        return mController.getListenerProfiler();
+    }
+
+    /**
+     * Print the current header state together with the recorded transitions, for bug reports.
+     */
+    public void dumpTransitionLog(PrintWriter writer) {
+        mController.dumpTransitionLog(writer);
+    }
+
+    /**
+     * Keep this header in sync with the other headers bound to the same state, typically the ones of the other
+     * ViewPager pages, without laying the offscreen ones out on every frame. See {@link HeaderCollapseState}.
+     *
+     * @param state the shared state, or null to unbind
+     */
+    public void setSharedCollapseState(@Nullable HeaderCollapseState state) {
+        mController.setSharedCollapseState(state);
+    }
+
+    @Nullable
+    public HeaderCollapseState getSharedCollapseState() {
+        return mController.getSharedCollapseState();
+    }
+
+    /**
+     * @return the height the header is animating to, or its current height when no animation is running, in px
+     */
+    public int getPredictedHeaderHeight() {
+        return mController.getPredictedHeaderHeight();
+    }
+
+    /**
+     * The height the body is going to get once the running snap, fling or programmatic animation ends. Use it to
+     * get the body content ready ahead, see {@link PredictiveBodyLayoutManager}.
+     *
+     * @return the predicted body height, or its current height when no animation is running, in px
+     */
+    public int getPredictedBodyHeight() {
+        if (mBottomView == null) {
+            return 0;
+        }
+
+        return mBottomView.getHeight() + mController.getPendingHeaderHeight() - mController.getPredictedHeaderHeight();
+    }
+
+    /**
+     * @param listener notified each time the header starts animating towards a known height, or null
+     */
+    public void setOnHeaderPredictionListener(@Nullable OnHeaderPredictionListener listener) {
+        mController.setOnHeaderPredictionListener(listener);
     }
 
     /* ▲ Public methods ends */
@@ -542,130 +962,9 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
     // NestedScrollingParent
     ///////////////////////////////////////////////////////////////////////////
 
-    /*
-     * stop intercepting nested scroll event when header layout has been shown or hidden.
-     */
-    private boolean shouldConsumeNestedScroll(int dy) {
-        if (dy > 0) {
-            //return getScrollY() < mOrgHeaderHeight;
-            return mTopView.getHeight() > mStickyFooterHeight;
-        } else {
-            //return getScrollY() > -mOvershootDistance;
-            return mTopView.getHeight() < mOrgHeaderHeight + mOvershootDistance;
-        }
-    }
-
-    /*
-     * prevent the view to be over scrolled by a long drag move
-     */
-    private boolean isReachedEdge(int dy) {
-        if (dy > 0) {
-            //return dy > (mOrgHeaderHeight - getScrollY());
-            return dy > mTopView.getHeight() - mStickyFooterHeight;
-        } else {
-            //return Math.abs(dy) > (getScrollY() + mOvershootDistance);
-            return Math.abs(dy) > (mOrgHeaderHeight + mOvershootDistance) - mTopView.getHeight();
-
-        }
-    }
-
-    private void changeHeaderHeightTo(int desHeight) {
-        LayoutParams temp = (LayoutParams) mTopView.getLayoutParams();
-        temp.height = desHeight;
-        mTopView.setLayoutParams(temp);
-    }
-
-    private Animator smoothScrollTo(int desY, long duration, AnimatorListener listener) {
-        ObjectAnimator yTranslate = ObjectAnimator.ofInt(this, "scrollY", desY);
-        yTranslate.setInterpolator(new DecelerateInterpolator());
-        yTranslate.setDuration(duration);
-        if (listener != null) {
-            yTranslate.addListener(listener);
-        }
-        yTranslate.start();
-        return yTranslate;
-    }
-
-    private Animator smoothChangeHeaderHeightTo(int desHeight, AnimatorListener listener) {
-        return smoothChangeHeaderHeightTo(desHeight, 300L, listener);
-    }
-
-    private Animator smoothChangeHeaderHeightTo(int desHeight, long duration, @Nullable AnimatorListener listener) {
-        /*
-		ObjectAnimator xTranslate = ObjectAnimator.ofInt(this, "scrollX", desX);
-		ObjectAnimator yTranslate = ObjectAnimator.ofInt(this, "scrollY", desY);
-
-		yTranslate.setInterpolator(new DecelerateInterpolator());
-		yTranslate.addUpdateListener(new AnimatorUpdateListener() {
-			@Override
-			public void onAnimationUpdate(ValueAnimator animation) {
-				if (mHeaderStatusChangedListeners != null)
-					for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-						l.onHeaderOffsetChanged(getScrollY(), mOrgHeaderHeight,
-								(getScrollY() * 1.0f) / mOrgHeaderHeight, mIsScrollingDown);
-					}
-
-			}
-		});
-		*/
-        if (desHeight < 0) {
-            return null;
-        }
-
-        final LinearLayout.LayoutParams startParams = new LinearLayout.LayoutParams(mTopView.getLayoutParams());
-        final LinearLayout.LayoutParams endParams = new LinearLayout.LayoutParams(mTopView.getLayoutParams());
-        endParams.height = desHeight;
-        ValueAnimator animator = ValueAnimator.ofObject(new TypeEvaluator<LayoutParams>() {
-            @Override
-            public LayoutParams evaluate(float fraction, LayoutParams startValue, LayoutParams endValue) {
-                LayoutParams temp = (LayoutParams) mTopView.getLayoutParams();
-                lastHeaderHeight = mTopView.getHeight();
-                temp.height = (int) (startValue.height + (endValue.height - startValue.height) * fraction);
-                return temp;
-            }
-        }, startParams, endParams);
-
-        animator.setDuration(duration);
-        animator.setInterpolator(new DecelerateInterpolator());
-        animator.addUpdateListener(new AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                LayoutParams layoutParams = (LayoutParams) animation.getAnimatedValue();
-                if (mTopView != null) {
-                    mTopView.setLayoutParams(layoutParams);
-                }
-                if (mHeaderStatusChangedListeners != null) {
-                    for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                        l.onHeaderOffsetChanged(mOrgHeaderHeight - layoutParams.height, mOrgHeaderHeight,
-                                ((mOrgHeaderHeight - layoutParams.height) * 1.0f) / (mOrgHeaderHeight - mStickyFooterHeight), mIsScrollingDown);
-                    }
-                }
-
-                if (mSingleHeaderStatusChangedListener != null) {
-                    mSingleHeaderStatusChangedListener.onHeaderOffsetChanged(mOrgHeaderHeight - layoutParams.height, mOrgHeaderHeight,
-                            ((mOrgHeaderHeight - layoutParams.height) * 1.0f) / (mOrgHeaderHeight - mStickyFooterHeight), mIsScrollingDown);
-                }
-            }
-        });
-        if (listener != null) {
-            animator.addListener(listener);
-        }
-        animator.start();
-
-        /*
-		AnimatorSet animators = new AnimatorSet();
-		animators.setDuration(duration);
-		animators.playTogether(xTranslate, yTranslate);
-		if (listener != null) animators.addListener(listener);
-		animators.start();
-        */
-
-        return animator;
-    }
-
     @Override
     public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
-        return (nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) == ViewCompat.SCROLL_AXIS_VERTICAL;
+        return mController.onStartNestedScroll(nestedScrollAxes);
     }
 
     @Override
@@ -677,311 +976,23 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
 
     @Override
     public void onStopNestedScroll(View target) {
-        lastHeaderHeight = 0;
-        mIsBeingDragged = false;
         mParentHelper.onStopNestedScroll(target);
         stopNestedScroll();
 
-        if (mOvershootDistance > 0
-                && ((mTopView.getHeight() > mOrgHeaderHeight) || (mOrgHeaderHeight == 0
-                && getScrollY() < 0))) {
-            if (mBounceBackForOvershooting != null && mBounceBackForOvershooting.isStarted()) {
-                mBounceBackForOvershooting.cancel();
-            }
-            if (mOrgHeaderHeight > 0 && mTopView.getHeight() > mOrgHeaderHeight) {
-                mBounceBackForOvershooting = smoothChangeHeaderHeightTo(mOrgHeaderHeight, 600L, null);
-            } else if (mOrgHeaderHeight == 0 && getScrollY() < 0) {
-                mBounceBackForOvershooting = smoothScrollTo(mOrgHeaderHeight, 600L, null);
-            }
-            return;
-        }
-
-        if (!mAutoDrawerModeEnabled || mCurHeaderStatus == EXPANDED || mCurHeaderStatus == COLLAPSED) {
-            return;
-        }
-        // Drawer adsorb effect
-        if (mIsScrollingDown && (mTopView.getHeight() > touchSlop)) {
-            smoothChangeHeaderHeightTo(mOrgHeaderHeight, new AnimatorListener() {
-                @Override
-                public void onAnimationStart(Animator animation) {
-                }
-
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    if (mIsEnabled) {
-                        if (mHeaderStatusChangedListeners != null) {
-                            for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                                l.onHeaderExpanded();
-                            }
-                        }
-
-                        if (mSingleHeaderStatusChangedListener != null) {
-                            mSingleHeaderStatusChangedListener.onHeaderExpanded();
-                        }
-                    }
-
-                    mCurHeaderStatus = EXPANDED;
-                }
-
-                @Override
-                public void onAnimationCancel(Animator animation) {
-                }
-
-                @Override
-                public void onAnimationRepeat(Animator animation) {
-                }
-            });
-        } else if (!mIsScrollingDown && mTopView.getHeight() < (mOrgHeaderHeight - touchSlop)){
-            smoothChangeHeaderHeightTo(mStickyFooterHeight, new AnimatorListener() {
-                @Override
-                public void onAnimationStart(Animator animation) {
-                }
-
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    if (mIsEnabled) {
-                        if (mHeaderStatusChangedListeners != null) {
-                            for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                                l.onHeaderCollapsed();
-                            }
-                        }
-
-                        if (mSingleHeaderStatusChangedListener != null) {
-                            mSingleHeaderStatusChangedListener.onHeaderCollapsed();
-                        }
-                    }
-
-                    mCurHeaderStatus = COLLAPSED;
-                }
-
-                @Override
-                public void onAnimationCancel(Animator animation) {
-                }
-
-                @Override
-                public void onAnimationRepeat(Animator animation) {
-                }
-            });
-        }
+        mController.onStopNestedScroll();
     }
 
     /*
-     *  The sequence of the below callbacks should be onNestedPreScroll --> onNestedScroll --> onNestedPreFling --> onNestedFling
-     *  The fling related callbacks would only be called when a fling event detected.
-     */
-
-    /*
-     *  When scrolling down and dyUnconsumed is a non-zero value, means the child has consumed part of the scrolling event,
-     *  here should expand the header.
-     *  Also see onNestedPreScroll(View target, int dx, int dy, int[] consumed)
+     *  The collapse itself is driven by HeaderCollapseController, see the nested scroll events there.
      */
     @Override
     public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
-        unconsumedDy = dyUnconsumed;
-
-        //final int oldScrollY = getScrollY();
-        final int headerHeight = mTopView.getHeight();
-
-        //if (dyUnconsumed < 0 && oldScrollY <= 0 && mIsEnabled) //Scrolling down and header has totally expanded
-        if (dyUnconsumed < 0 && headerHeight >= mOrgHeaderHeight && mIsEnabled) {
-            if (mCurHeaderStatus != EXPANDED) {
-                if (mHeaderStatusChangedListeners != null) {
-                    for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                        l.onHeaderExpanded();
-                    }
-                }
-
-                if (mSingleHeaderStatusChangedListener != null) {
-                    mSingleHeaderStatusChangedListener.onHeaderExpanded();
-                }
-
-                mCurHeaderStatus = EXPANDED;
-            }
-        }
-
-        int actualPerformedDy;
-        int actualConsumedDy;
-        boolean isReachedEdge;
-
-        //if (oldScrollY > -mOvershootDistance && oldScrollY <= mOrgHeaderHeight) {
-        if (headerHeight >= mStickyFooterHeight && mOrgHeaderHeight > 0 && headerHeight < mOrgHeaderHeight + mOvershootDistance) {
-            if (isReachedEdge = isReachedEdge(dyUnconsumed)) {
-                if (dyUnconsumed < 0) {
-                    //actualPerformedDy = -(getScrollY() + mOvershootDistance);
-                    actualPerformedDy = -(mOrgHeaderHeight - headerHeight + mOvershootDistance);
-                } else {
-                    //actualPerformedDy = mOrgHeaderHeight - getScrollY();
-                    actualPerformedDy = headerHeight - mStickyFooterHeight;
-                }
-                actualConsumedDy = actualPerformedDy;
-            } else {
-                if (headerHeight > mOrgHeaderHeight) {  // The layout has already been dragged to overshoot
-                    actualPerformedDy = dyUnconsumed / 3;
-                } else {
-                    actualPerformedDy = dyUnconsumed;
-                }
-                actualConsumedDy = dyUnconsumed;
-            }
-
-            // The value of actualConsumedDy and actualPerformedDy can be different only when in overshoot mode
-            //scrollBy(0, actualPerformedDy);
-            if (actualPerformedDy != 0 && mIsBeingDragged) {
-                final LayoutParams tempLp = (LayoutParams) mTopView.getLayoutParams();
-                lastHeaderHeight = headerHeight;
-                tempLp.height = headerHeight - actualPerformedDy;
-                mTopView.setLayoutParams(tempLp);
-            }
-
-            // Scrolling down, and child has consumed part of(not all) the scrolling event
-            if (dyUnconsumed < 0) {
-
-                //if (oldScrollY <= mOrgHeaderHeight * 0.88 && mIsEnabled) //Give 12% buffer height here when sending out the expanding event, for better user experience
-                if (headerHeight >= (mOrgHeaderHeight - mStickyFooterHeight) * 0.12 && mIsEnabled) {
-                    if (mHeaderStatusChangedListeners != null) {
-                        for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                            l.onHeaderOffsetChanged(mOrgHeaderHeight - headerHeight, mOrgHeaderHeight,
-                                    ((mOrgHeaderHeight - headerHeight) * 1.0f) / (mOrgHeaderHeight - mStickyFooterHeight), mIsScrollingDown);
-                        }
-                    }
-
-                    if (mSingleHeaderStatusChangedListener != null) {
-                        mSingleHeaderStatusChangedListener.onHeaderOffsetChanged(mOrgHeaderHeight - headerHeight, mOrgHeaderHeight,
-                                ((mOrgHeaderHeight - headerHeight) * 1.0f) / (mOrgHeaderHeight - mStickyFooterHeight), mIsScrollingDown);
-                    }
-
-                    if (mCurHeaderStatus != EXPANDING) {
-                        if (mCurHeaderStatus == COLLAPSED) {
-                            if (mHeaderStatusChangedListeners != null) {
-                                for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                                    l.onHeaderStartExpanding();
-                                }
-                            }
-
-                            if (mSingleHeaderStatusChangedListener != null) {
-                                mSingleHeaderStatusChangedListener.onHeaderStartExpanding();
-                            }
-
-                            mCurHeaderStatus = EXPANDING;
-                        }
-                    }
-                }
-            }
-
-            //int myConsumed = isReachedEdge ? actualConsumedDy : getScrollY() - oldScrollY;
-            int myConsumed = isReachedEdge ? actualConsumedDy : actualPerformedDy;
-            int myUnconsumed = dyUnconsumed - myConsumed;
-
-            dispatchNestedScroll(0, myConsumed, 0, myUnconsumed, null);
-        } else if (mOrgHeaderHeight == 0 && mOvershootDistance > 0 && getScrollY() > -mOvershootDistance) {
-            actualPerformedDy = dyUnconsumed / 3;
-            scrollBy(0, actualPerformedDy);
-            dispatchNestedScroll(0, actualPerformedDy, 0, dyUnconsumed - actualPerformedDy, null);
-        }
+        mController.onNestedScroll(dyUnconsumed);
     }
 
-    /*
-     * When scrolling up, first intercept the scrolling event to collapse the header, then give the event back to its child
-     * When scrolling down, let the child consume the scrolling first
-     * Also see onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed)
-     */
     @Override
     public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
-        int fixedDy = dy;
-        if (mIsScrollingDown && mIsBeingDragged) {
-            // The body layout height is dynamically changing, and as well as the return of getY() which is a relative value.
-            // And thus it will lead to wrong calculation of dy.
-            // Here we make a manually adjust for dy value to correct the wrong dy caused by the changing of body height.
-            fixedDy = dy < 0 ? dy : dy - Math.abs(lastHeaderHeight - mTopView.getHeight());
-        }
-        if (Math.abs(fixedDy) > 3) {
-            mIsScrollingDown = (fixedDy < 0);
-            mIsBeingDragged = true;
-        }
-        if (!dispatchNestedPreScroll(dx, dy, consumed, null)) {
-            if (!shouldConsumeNestedScroll(fixedDy)) {
-                return;
-            }
-
-            if (mBounceBackForOvershooting != null && mBounceBackForOvershooting.isStarted()) {
-                mBounceBackForOvershooting.cancel();
-            }
-            if (fixedDy < 0) {
-                if (fixedDy != dy) {
-                    onNestedScroll(this, 0, 0, 0, fixedDy);
-                }
-                return;  // Scrolling down event would not be handled here
-            }
-
-            final int headerHeight = mTopView.getHeight();
-
-            if (mCurHeaderStatus != COLLAPSING) {
-                //if (getScrollY() >= -mOvershootDistance && getScrollY() < mOrgHeaderHeight && mIsEnabled) {
-                if (headerHeight > mStickyFooterHeight && headerHeight < (mOrgHeaderHeight + mOvershootDistance) && mIsEnabled) {
-                    if (mHeaderStatusChangedListeners != null) {
-                        for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                            l.onHeaderStartCollapsing();
-                        }
-                    }
-
-                    if (mSingleHeaderStatusChangedListener != null) {
-                        mSingleHeaderStatusChangedListener.onHeaderStartCollapsing();
-                    }
-
-                    mCurHeaderStatus = COLLAPSING;
-                }
-            }
-
-            int actualPerformedDy;
-
-            if (isReachedEdge(fixedDy)) {
-                actualPerformedDy = headerHeight > mStickyFooterHeight ? headerHeight - mStickyFooterHeight : 0;
-
-            } else {
-                actualPerformedDy = fixedDy;
-            }
-
-            //scrollBy(0, actualPerformedDy);
-            if (actualPerformedDy != 0 && mIsBeingDragged) {
-                final LayoutParams tempLp = (LayoutParams) mTopView.getLayoutParams();
-                lastHeaderHeight = mTopView.getHeight();
-                tempLp.height = mTopView.getHeight() - actualPerformedDy;
-                mTopView.setLayoutParams(tempLp);
-            }
-
-            if (mIsEnabled) {
-                if (mHeaderStatusChangedListeners != null) {
-                    for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                        l.onHeaderOffsetChanged(mOrgHeaderHeight - headerHeight, mOrgHeaderHeight,
-                                ((mOrgHeaderHeight - headerHeight) * 1.0f) / (mOrgHeaderHeight - mStickyFooterHeight), mIsScrollingDown);
-                    }
-                }
-
-                if (mSingleHeaderStatusChangedListener != null) {
-                    mSingleHeaderStatusChangedListener.onHeaderOffsetChanged(mOrgHeaderHeight - headerHeight, mOrgHeaderHeight,
-                            ((mOrgHeaderHeight - headerHeight) * 1.0f) / (mOrgHeaderHeight - mStickyFooterHeight), mIsScrollingDown);
-                }
-            }
-
-            //if (dy > 0 && getScrollY() >= mOrgHeaderHeight && mIsEnabled) {
-            if (mTopView.getHeight() == mStickyFooterHeight && mIsEnabled) {
-                if (mCurHeaderStatus != COLLAPSED) {
-                    if (mHeaderStatusChangedListeners != null) {
-                        for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                            l.onHeaderCollapsed();
-                        }
-                    }
-
-                    if (mSingleHeaderStatusChangedListener != null) {
-                        mSingleHeaderStatusChangedListener.onHeaderCollapsed();
-                    }
-
-                    mCurHeaderStatus = COLLAPSED;
-                }
-            }
-
-            consumed[0] = 0;
-            consumed[1] = dy;
-        }
+        mController.onNestedPreScroll(dx, dy, consumed);
     }
 
     @Override
@@ -989,96 +1000,9 @@ public class HeaderCollapsibleLayout extends LinearLayout implements NestedScrol
         return !consumed;
     }
 
-    /*
-     * When fling up and last-time fling was down side, smoothly collapse the header.
-     */
     @Override
     public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
-        if (mSupportFlingAction) {
-            if (velocityY > 0 && lastVelocityY < 0) {
-                if (mCurHeaderStatus != COLLAPSED) {
-                    // Smoothly collapsing the header
-                    smoothChangeHeaderHeightTo(mStickyFooterHeight, new AnimatorListener() {
-                        @Override
-                        public void onAnimationStart(Animator animation) {
-                            mCurHeaderStatus = COLLAPSING;
-                        }
-
-                        @Override
-                        public void onAnimationEnd(Animator animation) {
-                            if (mIsEnabled) {
-                                if (mHeaderStatusChangedListeners != null) {
-                                    for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                                        l.onHeaderCollapsed();
-                                    }
-                                }
-
-                                if (mSingleHeaderStatusChangedListener != null) {
-                                    mSingleHeaderStatusChangedListener.onHeaderCollapsed();
-                                }
-                            }
-
-                            mCurHeaderStatus = COLLAPSED;
-                        }
-
-                        @Override
-                        public void onAnimationCancel(Animator animation) {
-                        }
-
-                        @Override
-                        public void onAnimationRepeat(Animator animation) {
-                        }
-                    });
-                }
-
-                lastVelocityY = velocityY;
-
-                return true;
-            }
-
-            // Fling down and has unconsumed vertical value, should handle this fling
-            if (velocityY < 0 && unconsumedDy < 0) {
-
-                // Smoothly expanding the header, related callbacks would be called in onNestedScroll
-                if (mCurHeaderStatus != EXPANDED) {
-                    smoothChangeHeaderHeightTo(mOrgHeaderHeight, new AnimatorListener() {
-                        @Override
-                        public void onAnimationStart(Animator animation) {
-                            mCurHeaderStatus = EXPANDING;
-                        }
-
-                        @Override
-                        public void onAnimationEnd(Animator animation) {
-                            if (mIsEnabled) {
-                                if (mHeaderStatusChangedListeners != null) {
-                                    for (OnHeaderStatusChangedListener l : mHeaderStatusChangedListeners) {
-                                        l.onHeaderExpanded();
-                                    }
-                                }
-
-                                if (mSingleHeaderStatusChangedListener != null) {
-                                    mSingleHeaderStatusChangedListener.onHeaderExpanded();
-                                }
-                            }
-
-                            mCurHeaderStatus = EXPANDED;
-                        }
-
-                        @Override
-                        public void onAnimationCancel(Animator animation) {
-                        }
-
-                        @Override
-                        public void onAnimationRepeat(Animator animation) {
-                        }
-                    });
-                }
-            }
-        }
-
-        lastVelocityY = velocityY;
-
-        return dispatchNestedPreFling(velocityX, velocityY);
+        return mController.onNestedPreFling(velocityX, velocityY);
     }
 
     @Override
@@ -0,0 +1,187 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * The debug overlay of {@link HeaderCollapsibleLayout#setDebugHudEnabled(boolean)}, drawn over the children.
+ * <p>
+ * Frame times are the intervals between {@link Choreographer} frame callbacks, so a dropped frame shows up as a
+ * doubled interval. Sampling them never redraws the layout, which would skew them, the overlay is refreshed by the
+ * frames that draw the layout anyway and once a second. There is no Choreographer before API 16, and no frame
+ * times either.
+ * <p>
+ * Everything is allocated up front, so drawing the overlay on every frame never allocates. While disabled there
+ * is no instance at all, and the hooks cost a single field read.
+ */
+final class HeaderDebugHud {
+
+    private static final int FRAME_SAMPLES = 60;
+    private static final long ONE_SECOND_NANOS = 1_000_000_000L;
+    private static final long FRAME_BUDGET_NANOS = 16_666_667L;
+
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mBackgroundPaint = new Paint();
+    private final Paint mSparkPaint = new Paint();
+    private final Paint mBudgetPaint = new Paint();
+    private final StringBuilder mText = new StringBuilder(64);
+    private final float mDensity;
+
+    private final long[] mFrameNanos = new long[FRAME_SAMPLES];
+    private int mFrameIndex;
+    private long mLastFrameTimeNanos;
+    private long mLastRefreshNanos;
+    private FrameSampler mFrameSampler;
+    private View mHost;
+
+    private long mLayoutWindowStart;
+    private int mLayoutPassesInWindow;
+    private int mLayoutPassesPerSecond;
+
+    private long mDispatchNanosInFrame;
+    private long mLastFrameDispatchNanos;
+
+    HeaderDebugHud(Context context) {
+        mDensity = context.getResources().getDisplayMetrics().density;
+
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(11 * mDensity);
+        mBackgroundPaint.setColor(0xB0000000);
+        mSparkPaint.setColor(Color.GREEN);
+        mSparkPaint.setStrokeWidth(mDensity);
+        mBudgetPaint.setColor(Color.RED);
+        mBudgetPaint.setStrokeWidth(1);
+    }
+
+    void onLayoutPass() {
+        final long now = System.nanoTime();
+        if (now - mLayoutWindowStart >= ONE_SECOND_NANOS) {
+            mLayoutPassesPerSecond = mLayoutPassesInWindow;
+            mLayoutPassesInWindow = 0;
+            mLayoutWindowStart = now;
+        }
+        mLayoutPassesInWindow++;
+    }
+
+    void onDispatch(long nanos) {
+        mDispatchNanosInFrame += nanos;
+    }
+
+    /**
+     * Start sampling the frame times, while the host is attached.
+     */
+    void start(View host) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return;
+        }
+
+        mHost = host;
+        if (mFrameSampler == null) {
+            mFrameSampler = new FrameSampler();
+        }
+        if (!mFrameSampler.running) {
+            mFrameSampler.running = true;
+            mLastFrameTimeNanos = 0;
+            Choreographer.getInstance().postFrameCallback(mFrameSampler);
+        }
+    }
+
+    void stop() {
+        if (mFrameSampler != null && mFrameSampler.running) {
+            mFrameSampler.running = false;
+            Choreographer.getInstance().removeFrameCallback(mFrameSampler);
+        }
+        mHost = null;
+    }
+
+    void draw(Canvas canvas, @HeaderCollapsibleLayout.HeaderStatus int status, int headerHeight, int offset) {
+        mLastFrameDispatchNanos = mDispatchNanosInFrame;
+        mDispatchNanosInFrame = 0;
+
+        final float padding = 4 * mDensity;
+        final float lineHeight = mTextPaint.getTextSize() + padding;
+        final float sparkHeight = 24 * mDensity;
+        final float width = 160 * mDensity;
+        canvas.drawRect(0, 0, width, padding + 3 * lineHeight + sparkHeight + padding, mBackgroundPaint);
+
+        float y = padding + mTextPaint.getTextSize();
+        mText.setLength(0);
+        mText.append(statusToString(status)).append("  h ").append(headerHeight).append("  off ").append(offset);
+        canvas.drawText(mText, 0, mText.length(), padding, y, mTextPaint);
+
+        y += lineHeight;
+        mText.setLength(0);
+        mText.append("layout/s ").append(mLayoutPassesPerSecond);
+        canvas.drawText(mText, 0, mText.length(), padding, y, mTextPaint);
+
+        y += lineHeight;
+        mText.setLength(0);
+        mText.append("dispatch ").append(mLastFrameDispatchNanos / 1000).append(" us/frame");
+        canvas.drawText(mText, 0, mText.length(), padding, y, mTextPaint);
+
+        // Frame times, the red line is the 60 fps budget and twice the budget is the top
+        final float bottom = y + padding + sparkHeight;
+        final float step = (width - 2 * padding) / (FRAME_SAMPLES - 1);
+        final float budgetY = bottom - sparkHeight / 2;
+        canvas.drawLine(padding, budgetY, width - padding, budgetY, mBudgetPaint);
+        float lastX = 0;
+        float lastY = 0;
+        for (int index = 0; index < FRAME_SAMPLES; index++) {
+            final long nanos = mFrameNanos[(mFrameIndex + index) % FRAME_SAMPLES];
+            final float x = padding + index * step;
+            final float sampleY = bottom - sparkHeight * Math.min(1F, nanos / (2F * FRAME_BUDGET_NANOS));
+            if (index > 0) {
+                canvas.drawLine(lastX, lastY, x, sampleY, mSparkPaint);
+            }
+            lastX = x;
+            lastY = sampleY;
+        }
+    }
+
+    /*
+     * Reposts itself on every frame while running, without redrawing anything but the once a second refresh.
+     */
+    private final class FrameSampler implements Choreographer.FrameCallback {
+        boolean running;
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!running) {
+                return;
+            }
+
+            if (mLastFrameTimeNanos != 0) {
+                mFrameNanos[mFrameIndex] = frameTimeNanos - mLastFrameTimeNanos;
+                mFrameIndex = (mFrameIndex + 1) % FRAME_SAMPLES;
+            }
+            mLastFrameTimeNanos = frameTimeNanos;
+
+            if (frameTimeNanos - mLastRefreshNanos >= ONE_SECOND_NANOS) {
+                // Keeps the overlay current while nothing else redraws the layout
+                mLastRefreshNanos = frameTimeNanos;
+                mHost.invalidate();
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private static String statusToString(int status) {
+        switch (status) {
+            case HeaderCollapsibleLayout.EXPANDED:
+                return "EXPANDED";
+            case HeaderCollapsibleLayout.EXPANDING:
+                return "EXPANDING";
+            case HeaderCollapsibleLayout.COLLAPSED:
+                return "COLLAPSED";
+            case HeaderCollapsibleLayout.COLLAPSING:
+                return "COLLAPSING";
+            default:
+                return String.valueOf(status);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
+import android.support.annotation.IdRes;
+import android.support.annotation.IntDef;
+import android.support.annotation.XmlRes;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.util.Xml;
+import android.view.InflateException;
+import android.view.View;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A view property of a header descendant mapped onto a range of the collapsed fraction of the header, which goes
+ * from 0 when expanded to 1 when collapsed down to the sticky height. Below the range the property stays at the
+ * from value, above it at the to value, and it is linearly interpolated in between.
+ * <p>
+ * Effects are applied by the header within the same frame as the height change, and a property is only set when
+ * its value has actually changed. The effects of the same view should not drive the same property, nor the
+ * translation of a pinned section or a collapsible stage.
+ * <p>
+ * Declared in xml with <code>app:headerEffects</code>, pointing to a resource of <code>res/xml</code>:
+ * <pre>
+ * &lt;header-effects xmlns:app="http://schemas.android.com/apk/res-auto"&gt;
+ *     &lt;effect app:effectTarget="@id/title" app:effectProperty="alpha"
+ *         app:effectStartFraction="0" app:effectEndFraction="0.5" app:effectFrom="1" app:effectTo="0" /&gt;
+ * &lt;/header-effects&gt;
+ * </pre>
+ */
+public final class HeaderEffect {
+
+    @SuppressWarnings("WeakerAccess")
+    @IntDef({PROPERTY_ALPHA, PROPERTY_TRANSLATION_Y, PROPERTY_SCALE, PROPERTY_PIN})
+    public @interface Property {
+    }
+
+    public static final int PROPERTY_ALPHA = 0;
+    /**
+     * The values are in px
+     */
+    public static final int PROPERTY_TRANSLATION_Y = 1;
+    /**
+     * Both scaleX and scaleY
+     */
+    public static final int PROPERTY_SCALE = 2;
+    /**
+     * The view follows the bottom edge of the header within the range, the values are ignored
+     */
+    public static final int PROPERTY_PIN = 3;
+
+    private final int mTargetId;
+    private final View mTarget;
+    @Property
+    private final int mProperty;
+    private final float mStartFraction;
+    private final float mEndFraction;
+    private final float mFromValue;
+    private final float mToValue;
+    private final float mSlope;  // Precomputed, value change per collapsed fraction
+
+    private View mBoundView;
+    private float mAppliedValue = Float.NaN;
+
+    /**
+     * @param targetId the id of a descendant of the header, resolved on the first layout of the header
+     */
+    public HeaderEffect(@IdRes int targetId, @Property int property, float startFraction, float endFraction,
+                        float fromValue, float toValue) {
+        this(targetId, null, property, startFraction, endFraction, fromValue, toValue);
+    }
+
+    /**
+     * @param target a descendant of the header
+     */
+    public HeaderEffect(View target, @Property int property, float startFraction, float endFraction,
+                        float fromValue, float toValue) {
+        this(View.NO_ID, target, property, startFraction, endFraction, fromValue, toValue);
+    }
+
+    private HeaderEffect(int targetId, View target, @Property int property, float startFraction, float endFraction,
+                         float fromValue, float toValue) {
+        if (startFraction < 0 || endFraction > 1 || startFraction >= endFraction) {
+            throw new IllegalArgumentException("Invalid fraction range [" + startFraction + ", " + endFraction + "]");
+        }
+
+        mTargetId = targetId;
+        mTarget = target;
+        mProperty = property;
+        mStartFraction = startFraction;
+        mEndFraction = endFraction;
+        mFromValue = fromValue;
+        mToValue = toValue;
+        mSlope = (toValue - fromValue) / (endFraction - startFraction);
+    }
+
+    @IdRes
+    public int getTargetId() {
+        return mTarget != null ? mTarget.getId() : mTargetId;
+    }
+
+    @Property
+    public int getProperty() {
+        return mProperty;
+    }
+
+    public float getStartFraction() {
+        return mStartFraction;
+    }
+
+    public float getEndFraction() {
+        return mEndFraction;
+    }
+
+    public float getFromValue() {
+        return mFromValue;
+    }
+
+    public float getToValue() {
+        return mToValue;
+    }
+
+    /*
+     * @return whether the target has been found within the header
+     */
+    boolean bind(View header) {
+        mBoundView = mTarget != null ? mTarget : header.findViewById(mTargetId);
+        mAppliedValue = Float.NaN;
+        return mBoundView != null;
+    }
+
+    /*
+     * Put the property of the target back to its neutral value.
+     */
+    void unbind() {
+        if (mBoundView != null) {
+            setProperty(mBoundView, mProperty == PROPERTY_ALPHA || mProperty == PROPERTY_SCALE ? 1F : 0F);
+            mBoundView = null;
+        }
+    }
+
+    /*
+     * @param collapseDistance the header height between expanded and collapsed, in px
+     */
+    void apply(float collapsedFraction, int collapseDistance) {
+        if (mBoundView == null) {
+            return;
+        }
+
+        final float fraction = Math.max(mStartFraction, Math.min(mEndFraction, collapsedFraction));
+        final float value;
+        if (mProperty == PROPERTY_PIN) {
+            value = -(fraction - mStartFraction) * collapseDistance;
+        } else {
+            value = mFromValue + (fraction - mStartFraction) * mSlope;
+        }
+
+        if (value != mAppliedValue) {
+            mAppliedValue = value;
+            setProperty(mBoundView, value);
+        }
+    }
+
+    private void setProperty(View view, float value) {
+        switch (mProperty) {
+            case PROPERTY_ALPHA:
+                view.setAlpha(value);
+                break;
+            case PROPERTY_SCALE:
+                view.setScaleX(value);
+                view.setScaleY(value);
+                break;
+            case PROPERTY_TRANSLATION_Y:
+            case PROPERTY_PIN:
+            default:
+                view.setTranslationY(value);
+                break;
+        }
+    }
+
+    /*
+     * Parse the effects declared in an xml resource, see the class doc for the format.
+     */
+    static List<HeaderEffect> inflate(Context context, @XmlRes int xmlRes) {
+        final List<HeaderEffect> effects = new ArrayList<>();
+        final XmlResourceParser parser = context.getResources().getXml(xmlRes);
+        try {
+            final AttributeSet attrs = Xml.asAttributeSet(parser);
+            int type;
+            while ((type = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (type != XmlPullParser.START_TAG || !"effect".equals(parser.getName())) {
+                    continue;
+                }
+
+                TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.HeaderEffect);
+                try {
+                    effects.add(new HeaderEffect(
+                            a.getResourceId(R.styleable.HeaderEffect_effectTarget, View.NO_ID),
+                            a.getInt(R.styleable.HeaderEffect_effectProperty, PROPERTY_ALPHA),
+                            a.getFloat(R.styleable.HeaderEffect_effectStartFraction, 0F),
+                            a.getFloat(R.styleable.HeaderEffect_effectEndFraction, 1F),
+                            readValue(a, R.styleable.HeaderEffect_effectFrom),
+                            readValue(a, R.styleable.HeaderEffect_effectTo)));
+                } finally {
+                    a.recycle();
+                }
+            }
+        } catch (XmlPullParserException | IOException e) {
+            throw new InflateException("Unable to read the header effects: " + e.getMessage(), e);
+        } finally {
+            parser.close();
+        }
+
+        return effects;
+    }
+
+    private static float readValue(TypedArray a, int index) {
+        TypedValue value = a.peekValue(index);
+        if (value == null) {
+            return 0F;
+        }
+
+        return value.type == TypedValue.TYPE_DIMENSION ? a.getDimension(index, 0F) : a.getFloat(index, 0F);
+    }
+}
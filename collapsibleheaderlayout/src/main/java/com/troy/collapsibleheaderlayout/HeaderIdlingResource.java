@@ -0,0 +1,73 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.support.test.espresso.IdlingResource;
+
+/**
+ * An Espresso {@link IdlingResource}, busy while a gesture moves the header or while a snap, a fling, a bounce
+ * back or a programmatic animation is on its way, so no test has to sleep after a swipe or a
+ * {@link HeaderCollapsibleLayout#smoothCollapse()}.
+ * <p>
+ * Espresso is not a dependency of the library, this class is meant for the androidTest sources, which depend on
+ * <code>espresso-core</code> or <code>espresso-idling-resource</code> anyway:
+ * <pre>
+ * HeaderIdlingResource idlingResource = new HeaderIdlingResource(headerLayout);
+ * IdlingRegistry.getInstance().register(idlingResource);
+ * ...
+ * IdlingRegistry.getInstance().unregister(idlingResource);
+ * idlingResource.release();
+ * </pre>
+ * With {@link HeaderCollapsibleBehavior}, pass <code>HeaderCollapsibleBehavior.from(header).getController()</code>.
+ */
+public final class HeaderIdlingResource implements IdlingResource {
+
+    private final String mName;
+    private final HeaderCollapseController mController;
+    private volatile ResourceCallback mCallback;
+
+    public HeaderIdlingResource(HeaderCollapsibleLayout layout) {
+        this(layout.getController(), HeaderCollapsibleLayout.class.getSimpleName() + "@"
+                + Integer.toHexString(System.identityHashCode(layout)));
+    }
+
+    /**
+     * @param name unique among the registered resources
+     */
+    public HeaderIdlingResource(HeaderCollapseController controller, String name) {
+        mController = controller;
+        mName = name;
+        mController.addIdleObserver(mIdleObserver);
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public boolean isIdleNow() {
+        return mController.isIdle();
+    }
+
+    @Override
+    public void registerIdleTransitionCallback(ResourceCallback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Stop observing the header, once unregistered.
+     */
+    public void release() {
+        mController.removeIdleObserver(mIdleObserver);
+        mCallback = null;
+    }
+
+    private final Runnable mIdleObserver = new Runnable() {
+        @Override
+        public void run() {
+            final ResourceCallback callback = mCallback;
+            if (callback != null) {
+                callback.onTransitionToIdle();
+            }
+        }
+    };
+}
@@ -0,0 +1,316 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.os.Build;
+import android.support.annotation.IntDef;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+import android.view.animation.AnimationUtils;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Times every {@link OnHeaderStatusChangedListener} callback dispatched by a {@link HeaderCollapsibleLayout},
+ * and keeps a latency histogram per listener.
+ * <p>
+ * A warning is sent to the {@link OnSlowListenerWarningListener} when the callbacks of one listener take more
+ * than the frame budget within a single frame, or when a listener requests a layout during the dispatch.
+ * <p>
+ * A frame ends at the next {@link Choreographer} frame callback, which is posted once a callback has been
+ * profiled. A layout request is caught when the header or the body is flagged for layout after a callback but was
+ * not before it, a request made while a layout is pending already forces no extra traversal. Such a request is
+ * not reported at all. Since a moving header has flagged its own layout already, a listener relayouting on every
+ * offset change of a drag goes unnoticed, only the time spent in its callbacks is.
+ * <p>
+ * Apply it by calling {@link HeaderCollapsibleLayout#setListenerProfiler(HeaderListenerProfiler)}. Listeners
+ * are referenced weakly, so profiling never keeps a removed listener alive.
+ */
+public final class HeaderListenerProfiler {
+
+    @SuppressWarnings("WeakerAccess")
+    @IntDef({CALLBACK_START_COLLAPSING, CALLBACK_COLLAPSED, CALLBACK_START_EXPANDING, CALLBACK_EXPANDED,
+            CALLBACK_OFFSET_CHANGED})
+    public @interface ListenerCallback {
+    }
+
+    /**
+     * {@link OnHeaderStatusChangedListener#onHeaderStartCollapsing()}
+     */
+    public static final int CALLBACK_START_COLLAPSING = 0;
+    /**
+     * {@link OnHeaderStatusChangedListener#onHeaderCollapsed()}
+     */
+    public static final int CALLBACK_COLLAPSED = 1;
+    /**
+     * {@link OnHeaderStatusChangedListener#onHeaderStartExpanding()}
+     */
+    public static final int CALLBACK_START_EXPANDING = 2;
+    /**
+     * {@link OnHeaderStatusChangedListener#onHeaderExpanded()}
+     */
+    public static final int CALLBACK_EXPANDED = 3;
+    /**
+     * {@link OnHeaderStatusChangedListener#onHeaderOffsetChanged(int, int, float, boolean)}
+     */
+    public static final int CALLBACK_OFFSET_CHANGED = 4;
+
+    /**
+     * Upper bounds of the histogram buckets, in ns. The last bucket holds everything above the last bound.
+     */
+    private static final long[] BUCKET_UPPER_BOUNDS_NANOS = {
+            50_000L, 100_000L, 250_000L, 500_000L, 1_000_000L, 2_000_000L, 4_000_000L, 8_000_000L, 16_000_000L
+    };
+
+    /**
+     * Default per-frame budget of a single listener, in ns
+     */
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 2_000_000L;
+
+    public interface OnSlowListenerWarningListener {
+        /**
+         * Called once per frame when the callbacks of a listener have taken more than the frame budget.
+         *
+         * @param listener        the slow listener
+         * @param callback        the callback which exceeded the budget
+         * @param frameCostNanos  the total time spent in this listener in the current frame, in ns
+         * @param frameBudgetNanos the per-frame budget, in ns
+         */
+        void onListenerOverBudget(OnHeaderStatusChangedListener listener, @ListenerCallback int callback,
+                                  long frameCostNanos, long frameBudgetNanos);
+
+        /**
+         * Called when a listener requests a layout while its callback is being dispatched, which forces
+         * another layout traversal. Not called for a request made while a layout of the header or the body is
+         * pending already.
+         */
+        void onListenerRequestedLayout(OnHeaderStatusChangedListener listener, @ListenerCallback int callback);
+    }
+
+    /**
+     * The statistics of a single listener.
+     */
+    public static final class ListenerStats {
+        private final int[] mBuckets = new int[BUCKET_UPPER_BOUNDS_NANOS.length + 1];
+        private final long[] mCallbackNanos = new long[CALLBACK_OFFSET_CHANGED + 1];
+        private long mCallCount;
+        private long mTotalNanos;
+        private long mMaxNanos;
+        private int mRequestLayoutCount;
+
+        private long mFrame = -1;
+        private long mFrameNanos;
+        private boolean mFrameWarned;
+
+        ListenerStats() {
+        }
+
+        public long getCallCount() {
+            return mCallCount;
+        }
+
+        public long getTotalNanos() {
+            return mTotalNanos;
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        /**
+         * @return total time spent in the given callback, in ns
+         */
+        public long getCallbackNanos(@ListenerCallback int callback) {
+            return mCallbackNanos[callback];
+        }
+
+        public int getRequestLayoutCount() {
+            return mRequestLayoutCount;
+        }
+
+        public int getBucketCount() {
+            return mBuckets.length;
+        }
+
+        /**
+         * @return the count of the calls which fell in the given histogram bucket
+         */
+        public int getBucket(int bucket) {
+            return mBuckets[bucket];
+        }
+
+        /**
+         * @return the upper bound of the given histogram bucket in ns, or {@link Long#MAX_VALUE} for the last one
+         */
+        public long getBucketUpperBoundNanos(int bucket) {
+            return bucket < BUCKET_UPPER_BOUNDS_NANOS.length ? BUCKET_UPPER_BOUNDS_NANOS[bucket] : Long.MAX_VALUE;
+        }
+
+        private void add(int callback, long nanos) {
+            mCallCount++;
+            mTotalNanos += nanos;
+            mCallbackNanos[callback] += nanos;
+            if (nanos > mMaxNanos) {
+                mMaxNanos = nanos;
+            }
+
+            int bucket = 0;
+            while (bucket < BUCKET_UPPER_BOUNDS_NANOS.length && nanos > BUCKET_UPPER_BOUNDS_NANOS[bucket]) {
+                bucket++;
+            }
+            mBuckets[bucket]++;
+        }
+    }
+
+    private final Map<OnHeaderStatusChangedListener, ListenerStats> mStats = new WeakHashMap<>();
+    private long mFrameBudgetNanos;
+    private OnSlowListenerWarningListener mWarningListener;
+
+    private OnHeaderStatusChangedListener mDispatchingListener;
+    private int mDispatchingCallback;
+
+    /* Counts the frame callbacks since the first profiled callback */
+    private long mFrame;
+    private FrameTicker mFrameTicker;
+
+    public HeaderListenerProfiler() {
+        this(DEFAULT_FRAME_BUDGET_NANOS, null);
+    }
+
+    public HeaderListenerProfiler(long frameBudgetNanos, @Nullable OnSlowListenerWarningListener warningListener) {
+        mFrameBudgetNanos = frameBudgetNanos;
+        mWarningListener = warningListener;
+    }
+
+    public void setFrameBudgetNanos(long frameBudgetNanos) {
+        mFrameBudgetNanos = frameBudgetNanos;
+    }
+
+    public long getFrameBudgetNanos() {
+        return mFrameBudgetNanos;
+    }
+
+    public void setOnSlowListenerWarningListener(@Nullable OnSlowListenerWarningListener warningListener) {
+        mWarningListener = warningListener;
+    }
+
+    /**
+     * @return the statistics of the given listener, or null if none of its callbacks has been profiled yet
+     */
+    @Nullable
+    public ListenerStats getStats(OnHeaderStatusChangedListener listener) {
+        return mStats.get(listener);
+    }
+
+    public void reset() {
+        mStats.clear();
+    }
+
+    public void dump(PrintWriter writer) {
+        writer.print("HeaderListenerProfiler: budget=");
+        writer.print(mFrameBudgetNanos / 1000);
+        writer.println("us");
+
+        for (Map.Entry<OnHeaderStatusChangedListener, ListenerStats> entry : mStats.entrySet()) {
+            ListenerStats stats = entry.getValue();
+            writer.print("  ");
+            writer.print(entry.getKey());
+            writer.print(" calls=");
+            writer.print(stats.mCallCount);
+            writer.print(" total=");
+            writer.print(stats.mTotalNanos / 1000);
+            writer.print("us max=");
+            writer.print(stats.mMaxNanos / 1000);
+            writer.print("us requestLayout=");
+            writer.println(stats.mRequestLayoutCount);
+
+            writer.print("    histogram(us):");
+            for (int bucket = 0; bucket < stats.mBuckets.length; bucket++) {
+                writer.print(' ');
+                writer.print(bucket < BUCKET_UPPER_BOUNDS_NANOS.length ? "<=" + BUCKET_UPPER_BOUNDS_NANOS[bucket] / 1000 : ">");
+                writer.print(':');
+                writer.print(stats.mBuckets[bucket]);
+            }
+            writer.println();
+        }
+    }
+
+    long beginCallback(OnHeaderStatusChangedListener listener, @ListenerCallback int callback) {
+        mDispatchingListener = listener;
+        mDispatchingCallback = callback;
+
+        return System.nanoTime();
+    }
+
+    /**
+     * @param layoutRequested whether the callback has flagged the header or the body for layout
+     */
+    void endCallback(long startNanos, boolean layoutRequested) {
+        final long cost = System.nanoTime() - startNanos;
+        final OnHeaderStatusChangedListener listener = mDispatchingListener;
+        final int callback = mDispatchingCallback;
+        mDispatchingListener = null;
+
+        if (listener == null) {
+            return;
+        }
+
+        ListenerStats stats = mStats.get(listener);
+        if (stats == null) {
+            stats = new ListenerStats();
+            mStats.put(listener, stats);
+        }
+        stats.add(callback, cost);
+
+        final long frame = currentFrame();
+        if (frame != stats.mFrame) {
+            stats.mFrame = frame;
+            stats.mFrameNanos = 0;
+            stats.mFrameWarned = false;
+        }
+        stats.mFrameNanos += cost;
+
+        if (layoutRequested) {
+            stats.mRequestLayoutCount++;
+            if (mWarningListener != null) {
+                mWarningListener.onListenerRequestedLayout(listener, callback);
+            }
+        }
+
+        if (!stats.mFrameWarned && stats.mFrameNanos > mFrameBudgetNanos) {
+            stats.mFrameWarned = true;
+            if (mWarningListener != null) {
+                mWarningListener.onListenerOverBudget(listener, callback, stats.mFrameNanos, mFrameBudgetNanos);
+            }
+        }
+    }
+
+    private long currentFrame() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            // No Choreographer yet, the animation time stays the same within most frames
+            return AnimationUtils.currentAnimationTimeMillis();
+        }
+
+        if (mFrameTicker == null) {
+            mFrameTicker = new FrameTicker();
+        }
+        if (!mFrameTicker.posted) {
+            mFrameTicker.posted = true;
+            Choreographer.getInstance().postFrameCallback(mFrameTicker);
+        }
+        return mFrame;
+    }
+
+    /*
+     * Ends the current frame, only posted while callbacks are being profiled.
+     */
+    private final class FrameTicker implements Choreographer.FrameCallback {
+        boolean posted;
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            posted = false;
+            mFrame++;
+        }
+    }
+}
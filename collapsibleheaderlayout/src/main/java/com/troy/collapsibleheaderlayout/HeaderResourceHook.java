@@ -0,0 +1,28 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.view.View;
+
+/**
+ * Lets the heavy content of a collapsed header go, and brings it back before the header expands, see
+ * {@link HeaderCollapsibleLayout#setHeaderResourceHook(HeaderResourceHook)}.
+ * <p>
+ * Typically, image views drop their bitmaps and heavy children are removed on release, then set back on restore.
+ * Both are called on the UiThread, and always in turn.
+ */
+public interface HeaderResourceHook {
+
+    /**
+     * Called when the header has been collapsed for the idle timeout, or when the system is low on memory while
+     * the header is collapsed.
+     *
+     * @param header the header view
+     */
+    void onReleaseHeaderResources(View header);
+
+    /**
+     * Called before the first frame of the next expand, the content may show up right after this returns.
+     *
+     * @param header the header view
+     */
+    void onRestoreHeaderResources(View header);
+}
@@ -0,0 +1,55 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.support.v4.os.TraceCompat;
+
+/**
+ * Optional systrace / Perfetto sections around the hot paths of {@link HeaderCollapsibleLayout}.
+ * <p>
+ * Tracing is off by default, and costs a single static field read per hot path while off. The section
+ * names are part of the API and will not change, so trace analysis queries can rely on them.
+ */
+public final class HeaderTrace {
+
+    public static final String SECTION_NESTED_PRE_SCROLL = "HCL#onNestedPreScroll";
+    public static final String SECTION_NESTED_SCROLL = "HCL#onNestedScroll";
+    public static final String SECTION_NESTED_PRE_FLING = "HCL#onNestedPreFling";
+    public static final String SECTION_STOP_NESTED_SCROLL = "HCL#onStopNestedScroll";
+    public static final String SECTION_DISPATCH_LISTENERS = "HCL#dispatchListeners";
+    public static final String SECTION_ANIMATOR_TICK = "HCL#animatorTick";
+    public static final String SECTION_FIRST_LAYOUT = "HCL#firstLayout";
+
+    private static boolean sEnabled;
+
+    private HeaderTrace() {
+    }
+
+    /**
+     * Enable or disable the trace sections of all the {@link HeaderCollapsibleLayout} instances.
+     * Call this on the UiThread, typically once at start up.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * @return whether a section has been started, which should be passed to {@link #endSection(boolean)}
+     */
+    static boolean beginSection(String sectionName) {
+        if (!sEnabled) {
+            return false;
+        }
+
+        TraceCompat.beginSection(sectionName);
+        return true;
+    }
+
+    static void endSection(boolean begun) {
+        if (begun) {
+            TraceCompat.endSection();
+        }
+    }
+}
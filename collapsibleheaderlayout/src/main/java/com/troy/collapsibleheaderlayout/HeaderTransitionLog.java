@@ -0,0 +1,198 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
+
+import java.io.PrintWriter;
+
+/**
+ * A fixed-capacity ring log of the header status transitions of a {@link HeaderCollapsibleLayout}.
+ * All the storage is allocated up front, recording a transition never allocates, and the oldest
+ * entry is overwritten once the log is full.
+ * <p>
+ * Entries are indexed from 0 (the oldest one still kept) to {@link #size()} - 1 (the latest one).
+ */
+public final class HeaderTransitionLog {
+
+    @SuppressWarnings("WeakerAccess")
+    @IntDef({CAUSE_DRAG, CAUSE_FLING, CAUSE_AUTO_DRAWER, CAUSE_PROGRAMMATIC, CAUSE_BOUNCE_BACK,
+            CAUSE_SHARED_STATE, CAUSE_IME})
+    public @interface TransitionCause {
+    }
+
+    /**
+     * Transition cause - the user is dragging the body
+     */
+    public static final int CAUSE_DRAG = 1;
+    /**
+     * Transition cause - a fling action
+     */
+    public static final int CAUSE_FLING = 2;
+    /**
+     * Transition cause - the drawer adsorb effect of the auto drawer mode
+     */
+    public static final int CAUSE_AUTO_DRAWER = 3;
+    /**
+     * Transition cause - a public method such as collapse() or smoothExpand() has been called
+     */
+    public static final int CAUSE_PROGRAMMATIC = 4;
+    /**
+     * Transition cause - the header bounced back after being overshot. Logged with the same old and new status, the
+     * status does not change and no listener is called
+     */
+    public static final int CAUSE_BOUNCE_BACK = 5;
+    /**
+     * Transition cause - the header adopted the state published by another header bound to the same
+     * {@link HeaderCollapseState}
+     */
+    public static final int CAUSE_SHARED_STATE = 6;
+    /**
+     * Transition cause - the window has been resized for the soft keyboard, see
+     * {@link HeaderCollapsibleLayout#setImeSyncEnabled(boolean)}
+     */
+    public static final int CAUSE_IME = 7;
+
+    private final int[] mOldStatus;
+    private final int[] mNewStatus;
+    private final int[] mCause;
+    private final int[] mHeaderHeight;
+    private final long[] mTimestamp;
+
+    private int mNext;
+    private int mSize;
+
+    HeaderTransitionLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, was " + capacity);
+        }
+
+        mOldStatus = new int[capacity];
+        mNewStatus = new int[capacity];
+        mCause = new int[capacity];
+        mHeaderHeight = new int[capacity];
+        mTimestamp = new long[capacity];
+    }
+
+    void record(int oldStatus, int newStatus, int cause, int headerHeight) {
+        mOldStatus[mNext] = oldStatus;
+        mNewStatus[mNext] = newStatus;
+        mCause[mNext] = cause;
+        mHeaderHeight[mNext] = headerHeight;
+        mTimestamp[mNext] = SystemClock.uptimeMillis();
+
+        mNext = (mNext + 1) % mOldStatus.length;
+        if (mSize < mOldStatus.length) {
+            mSize++;
+        }
+    }
+
+    public int capacity() {
+        return mOldStatus.length;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        mNext = 0;
+        mSize = 0;
+    }
+
+    @HeaderCollapsibleLayout.HeaderStatus
+    public int getOldStatus(int index) {
+        return mOldStatus[toSlot(index)];
+    }
+
+    @HeaderCollapsibleLayout.HeaderStatus
+    public int getNewStatus(int index) {
+        return mNewStatus[toSlot(index)];
+    }
+
+    @TransitionCause
+    public int getCause(int index) {
+        return mCause[toSlot(index)];
+    }
+
+    /**
+     * @return the header height in px at the moment of the transition
+     */
+    public int getHeaderHeight(int index) {
+        return mHeaderHeight[toSlot(index)];
+    }
+
+    /**
+     * @return the time of the transition, based on {@link SystemClock#uptimeMillis()}
+     */
+    public long getTimestamp(int index) {
+        return mTimestamp[toSlot(index)];
+    }
+
+    /**
+     * Print all the kept entries, the oldest first, in a human readable form for bug reports.
+     */
+    public void dump(PrintWriter writer) {
+        writer.print("HeaderTransitionLog: ");
+        writer.print(mSize);
+        writer.print('/');
+        writer.println(mOldStatus.length);
+
+        for (int index = 0; index < mSize; index++) {
+            writer.print("  ");
+            writer.print(getTimestamp(index));
+            writer.print("ms ");
+            writer.print(statusToString(getOldStatus(index)));
+            writer.print(" -> ");
+            writer.print(statusToString(getNewStatus(index)));
+            writer.print(" cause=");
+            writer.print(causeToString(getCause(index)));
+            writer.print(" height=");
+            writer.println(getHeaderHeight(index));
+        }
+    }
+
+    private int toSlot(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range [0, " + mSize + ")");
+        }
+
+        int oldest = mSize < mOldStatus.length ? 0 : mNext;
+        return (oldest + index) % mOldStatus.length;
+    }
+
+    static String statusToString(int status) {
+        switch (status) {
+            case HeaderCollapsibleLayout.COLLAPSING:
+                return "COLLAPSING";
+            case HeaderCollapsibleLayout.COLLAPSED:
+                return "COLLAPSED";
+            case HeaderCollapsibleLayout.EXPANDING:
+                return "EXPANDING";
+            case HeaderCollapsibleLayout.EXPANDED:
+                return "EXPANDED";
+            default:
+                return "UNKNOWN(" + status + ")";
+        }
+    }
+
+    static String causeToString(int cause) {
+        switch (cause) {
+            case CAUSE_DRAG:
+                return "DRAG";
+            case CAUSE_FLING:
+                return "FLING";
+            case CAUSE_AUTO_DRAWER:
+                return "AUTO_DRAWER";
+            case CAUSE_PROGRAMMATIC:
+                return "PROGRAMMATIC";
+            case CAUSE_BOUNCE_BACK:
+                return "BOUNCE_BACK";
+            case CAUSE_SHARED_STATE:
+                return "SHARED_STATE";
+            case CAUSE_IME:
+                return "IME";
+            default:
+                return "UNKNOWN(" + cause + ")";
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.animation.Animator;
+import android.animation.Animator.AnimatorListener;
+import android.animation.ValueAnimator;
+import android.support.annotation.UiThread;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A clock for tests, driving the snaps, flings and bounce backs of the headers it is set on, so a test reaches any
+ * point of an animation, or its end state, right away and in the same way on every run.
+ * <p>
+ * Set it with {@link HeaderCollapsibleLayout#setAnimationClock(HeaderVirtualClock)}, one clock may drive several
+ * headers. Each animation started from then on begins at the current virtual time and moves on with
+ * {@link #advanceBy(long)}, the listeners get the same callbacks as with the display frames. Meant for JVM tests,
+ * Robolectric ones included, where no display frame comes unless the main looper is advanced. Under instrumentation
+ * the display frames keep moving the animations between two advances, use {@link HeaderIdlingResource} there.
+ * <p>
+ * To be used on the UiThread.
+ */
+@UiThread
+public final class HeaderVirtualClock {
+
+    private final List<Entry> mEntries = new ArrayList<>();
+    private long mNowMillis;
+
+    /**
+     * @return the virtual time in ms, 0 at creation
+     */
+    public long getNowMillis() {
+        return mNowMillis;
+    }
+
+    /**
+     * @return whether an animation driven by this clock has not reached its end yet
+     */
+    public boolean hasRunningAnimations() {
+        pruneDroppedEntries();
+        return !mEntries.isEmpty();
+    }
+
+    /**
+     * Move the virtual time on, and every running animation with it. The animations reaching their duration end,
+     * and the ones their end listeners start, such as a snap after a bounce back, begin at the new time.
+     *
+     * @param millis the time step in ms, not negative
+     */
+    public void advanceBy(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Cannot move the clock back, millis: " + millis);
+        }
+
+        mNowMillis += millis;
+        pruneDroppedEntries();
+        final Entry[] entries = mEntries.toArray(new Entry[mEntries.size()]);
+        for (Entry entry : entries) {
+            // Ended or dropped by an earlier one of this pass
+            if (!mEntries.contains(entry) || !entry.mAnimator.isStarted()) {
+                continue;
+            }
+
+            final long playTime = mNowMillis - entry.mStartMillis;
+            if (playTime >= entry.mAnimator.getDuration()) {
+                entry.mAnimator.end();
+            } else {
+                entry.mAnimator.setCurrentPlayTime(playTime);
+            }
+        }
+    }
+
+    /**
+     * Jump every running animation to its end value, then the ones started by their end listeners, until the
+     * headers are at rest. The virtual time is left as is.
+     */
+    public void runToEnd() {
+        pruneDroppedEntries();
+        while (!mEntries.isEmpty()) {
+            final Entry entry = mEntries.remove(0);
+            entry.mAnimator.removeListener(mEntryRemover);
+            entry.mAnimator.end();
+        }
+    }
+
+    /*
+     * A recycled header cancels its animators with their listeners removed, this one included.
+     */
+    private void pruneDroppedEntries() {
+        for (int index = mEntries.size() - 1; index >= 0; index--) {
+            if (!mEntries.get(index).mAnimator.isStarted()) {
+                mEntries.remove(index);
+            }
+        }
+    }
+
+    /*
+     * Called right after the header started the animator.
+     */
+    void adopt(ValueAnimator animator) {
+        // Ended within start(), with animations turned off in the developer options
+        if (!animator.isStarted()) {
+            return;
+        }
+
+        mEntries.add(new Entry(animator, mNowMillis));
+        animator.addListener(mEntryRemover);
+    }
+
+    private final AnimatorListener mEntryRemover = new AnimatorListener() {
+        @Override
+        public void onAnimationStart(Animator animation) {
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            animation.removeListener(this);
+            for (int index = 0; index < mEntries.size(); index++) {
+                if (mEntries.get(index).mAnimator == animation) {
+                    mEntries.remove(index);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+        }
+
+        @Override
+        public void onAnimationRepeat(Animator animation) {
+        }
+    };
+
+    private static final class Entry {
+        final ValueAnimator mAnimator;
+        final long mStartMillis;
+
+        Entry(ValueAnimator animator, long startMillis) {
+            mAnimator = animator;
+            mStartMillis = startMillis;
+        }
+    }
+}
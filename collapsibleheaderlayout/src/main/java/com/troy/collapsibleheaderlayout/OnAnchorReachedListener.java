@@ -0,0 +1,13 @@
+package com.troy.collapsibleheaderlayout;
+
+/**
+ * Notified when a snap, a fling or a programmatic snap settles the header at an anchor, see
+ * {@link HeaderCollapsibleLayout#setSnapAnchors(int...)}.
+ */
+public interface OnAnchorReachedListener {
+    /**
+     * @param anchorIndex  the index of the anchor within the snap anchors, or -1 for the expanded or collapsed end
+     * @param anchorHeight the header height at the anchor, in px
+     */
+    void onAnchorReached(int anchorIndex, int anchorHeight);
+}
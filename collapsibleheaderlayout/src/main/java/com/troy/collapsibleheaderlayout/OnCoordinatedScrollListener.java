@@ -0,0 +1,21 @@
+package com.troy.collapsibleheaderlayout;
+
+/**
+ * Observes an animation moving the header and scrolling the body together, see
+ * {@link HeaderCollapsibleLayout#smoothChangeTo(int, BodyScroller, OnCoordinatedScrollListener)}.
+ */
+public interface OnCoordinatedScrollListener {
+    /**
+     * Called once per frame, after both the header and the body have been updated.
+     *
+     * @param progress     the interpolated progress of the whole animation, from 0 to 1
+     * @param headerHeight the header height of this frame, in px
+     * @param bodyScrolled the distance the body has scrolled by since the animation started, in px
+     */
+    void onCoordinatedScrollProgress(float progress, int headerHeight, int bodyScrolled);
+
+    /**
+     * @param canceled whether the animation has been canceled, by a touch on the body for instance
+     */
+    void onCoordinatedScrollEnd(boolean canceled);
+}
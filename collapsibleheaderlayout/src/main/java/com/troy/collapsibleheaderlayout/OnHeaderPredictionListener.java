@@ -0,0 +1,15 @@
+package com.troy.collapsibleheaderlayout;
+
+/**
+ * Notified when the header starts a snap, fling, bounce or programmatic animation, whose target height is known
+ * from the very first frame. The body can use it to prepare the content it is about to show.
+ */
+public interface OnHeaderPredictionListener {
+    /**
+     * Called right before the first frame of the animation.
+     *
+     * @param currentHeaderHeight   the header height when the animation starts, in px
+     * @param predictedHeaderHeight the header height once the animation ends, in px
+     */
+    void onHeaderHeightPredicted(int currentHeaderHeight, int predictedHeaderHeight);
+}
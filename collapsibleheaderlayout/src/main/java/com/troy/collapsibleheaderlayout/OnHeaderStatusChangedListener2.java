@@ -0,0 +1,21 @@
+package com.troy.collapsibleheaderlayout;
+
+/**
+ * An {@link OnHeaderStatusChangedListener} also told about the exact offset of the header, including the fraction
+ * of a pixel the layout has not shown yet. Animations and the overshoot damping move the header by fractions of a
+ * pixel, which matters for views driven by the offset on high refresh rate displays.
+ */
+public interface OnHeaderStatusChangedListener2 extends OnHeaderStatusChangedListener {
+
+    /**
+     * Called right after {@link #onHeaderOffsetChanged(int, int, float, boolean)}, with the same offset before
+     * rounding.
+     *
+     * @param verticalOffset            the exact vertical offset for the parent {@link HeaderCollapsibleLayout}, in px
+     * @param headerHeight              the total collapsible offset, in px
+     * @param headerCollapsedPercentage the exact percentage of the collapsed part of the header view
+     * @param isScrollingDown           whether the layout is scrolling down
+     */
+    void onHeaderExactOffsetChanged(float verticalOffset, int headerHeight, float headerCollapsedPercentage,
+                                    boolean isScrollingDown);
+}
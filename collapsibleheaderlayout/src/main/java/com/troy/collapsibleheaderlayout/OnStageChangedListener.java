@@ -0,0 +1,26 @@
+package com.troy.collapsibleheaderlayout;
+
+/**
+ * Observes the collapsible stages of a {@link HeaderCollapsibleLayout}, see
+ * {@link HeaderCollapsibleLayout#addCollapsibleStage(android.view.View)}.
+ */
+public interface OnStageChangedListener {
+
+    /**
+     * Called when the status of a stage has been changed.
+     *
+     * @param stageIndex the index of the stage, in collapse order
+     * @param status     the new status of the stage, one of the {@link HeaderCollapsibleLayout.HeaderStatus}
+     */
+    void onStageStatusChanged(int stageIndex, @HeaderCollapsibleLayout.HeaderStatus int status);
+
+    /**
+     * Called when the collapsed offset of a stage has been changed.
+     *
+     * @param stageIndex               the index of the stage, in collapse order
+     * @param verticalOffset           the collapsed part of the stage, in px
+     * @param stageHeight              the total collapsible offset of the stage, in px
+     * @param stageCollapsedPercentage the latest percentage of the collapsed part of the stage
+     */
+    void onStageOffsetChanged(int stageIndex, int verticalOffset, int stageHeight, float stageCollapsedPercentage);
+}
@@ -0,0 +1,44 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.content.Context;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * A LinearLayoutManager for a RecyclerView body, which lays out the rows the body is about to reveal while the
+ * header is collapsing, so they are created and bound ahead instead of all in the frame they show up.
+ * <p>
+ * While the header animates to a known height, the growth still to come is added to the extra layout space.
+ * Requires the <code>com.android.support:recyclerview-v7</code> dependency in the app.
+ */
+public class PredictiveBodyLayoutManager extends LinearLayoutManager {
+
+    private final HeaderCollapseController mController;
+
+    /**
+     * @param controller the controller of the header above the body, see {@link HeaderCollapsibleLayout#getController()}
+     *                   and {@link HeaderCollapsibleBehavior#getController()}
+     */
+    public PredictiveBodyLayoutManager(Context context, HeaderCollapseController controller) {
+        super(context);
+
+        mController = controller;
+    }
+
+    public PredictiveBodyLayoutManager(Context context, int orientation, boolean reverseLayout,
+                                       HeaderCollapseController controller) {
+        super(context, orientation, reverseLayout);
+
+        mController = controller;
+    }
+
+    @Override
+    protected int getExtraLayoutSpace(RecyclerView.State state) {
+        final int extraSpace = super.getExtraLayoutSpace(state);
+        if (getOrientation() != VERTICAL) {
+            return extraSpace;
+        }
+
+        return Math.max(extraSpace, mController.getPredictedBodyGrowth());
+    }
+}
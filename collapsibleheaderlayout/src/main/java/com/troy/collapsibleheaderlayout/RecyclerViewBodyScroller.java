@@ -0,0 +1,49 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+/**
+ * Brings an adapter position of a RecyclerView body to its top, within the same animation as the header.
+ * Requires a {@link LinearLayoutManager}, and the <code>com.android.support:recyclerview-v7</code> dependency in
+ * the app.
+ * <p>
+ * When the position is not laid out yet, the body first jumps to put it one viewport below the target, and then
+ * scrolls that last viewport along with the header.
+ */
+public class RecyclerViewBodyScroller extends BodyScroller {
+
+    private final RecyclerView mRecyclerView;
+    private final int mPosition;
+    private final int mOffset;
+
+    /**
+     * @param position the adapter position to bring into view
+     * @param offset   the distance in px from the top of the body to the top of the item once there
+     */
+    public RecyclerViewBodyScroller(RecyclerView recyclerView, int position, int offset) {
+        mRecyclerView = recyclerView;
+        mPosition = position;
+        mOffset = offset;
+    }
+
+    @Override
+    protected int computeScrollDistance() {
+        final LinearLayoutManager layoutManager = (LinearLayoutManager) mRecyclerView.getLayoutManager();
+        final View item = layoutManager.findViewByPosition(mPosition);
+        if (item != null) {
+            return item.getTop() - mRecyclerView.getPaddingTop() - mOffset;
+        }
+
+        // The first animation frame always has a zero fraction, so the body is laid out again before it scrolls
+        final int distance = mRecyclerView.getHeight();
+        layoutManager.scrollToPositionWithOffset(mPosition, mOffset + distance);
+        return distance;
+    }
+
+    @Override
+    protected void scrollBodyBy(int dy) {
+        mRecyclerView.scrollBy(0, dy);
+    }
+}
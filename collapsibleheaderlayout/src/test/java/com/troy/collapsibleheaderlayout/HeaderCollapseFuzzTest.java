@@ -0,0 +1,337 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Seeded fuzzing of the nested scroll handling of {@link HeaderCollapseController}, run headless on the JVM.
+ * <p>
+ * Random gestures made of pre-scrolls, scrolls, flings and stops are interleaved with programmatic calls and
+ * animation frames, and the invariants are checked after each event. A failing run is shrunk to a minimal sequence
+ * of events, printed along with its seed.
+ * <p>
+ * A few thousand events run by default. <code>-Dhcl.fuzz.events</code> opts in to a longer run, which also reports
+ * its throughput in events per second, and <code>-Dhcl.fuzz.seed</code> sets the first seed.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class HeaderCollapseFuzzTest {
+
+    private static final int HOST_HEIGHT = HeaderFixture.HEIGHT;
+    private static final int ORG_HEADER_HEIGHT = HeaderFixture.ORG_HEADER_HEIGHT;
+    private static final int OVERSHOOT_DISTANCE = 300;
+    private static final int BODY_SCROLL_RANGE = 3000;
+    private static final long FRAME_MS = 16L;
+    private static final int EVENTS_PER_RUN = 2000;
+    private static final long DEFAULT_EVENTS = 4000L;
+
+    private static final int OP_START = 0;
+    private static final int OP_PRE_SCROLL = 1;
+    private static final int OP_SCROLL = 2;
+    private static final int OP_DRAG = 3;
+    private static final int OP_FLING = 4;
+    private static final int OP_STOP = 5;
+    private static final int OP_FRAME = 6;
+    private static final int OP_PROGRAMMATIC = 7;
+    private static final String[] OP_NAMES = {"START", "PRE_SCROLL", "SCROLL", "DRAG", "FLING", "STOP", "FRAME",
+            "PROGRAMMATIC"};
+
+    private static final String[] PROGRAMMATIC_NAMES = {"collapse", "expand", "smoothCollapse", "smoothExpand"};
+
+    @Test
+    public void nestedScrollKeepsInvariants() {
+        final Long requestedEvents = Long.getLong("hcl.fuzz.events");
+        final long totalEvents = requestedEvents != null ? requestedEvents : DEFAULT_EVENTS;
+        final long firstSeed = Long.getLong("hcl.fuzz.seed", 20180901L);
+
+        long events = 0;
+        final long start = System.nanoTime();
+        for (long seed = firstSeed; events < totalEvents; seed++) {
+            final List<int[]> ops = new ArrayList<>(EVENTS_PER_RUN);
+            final String failure = new Run().generate(new Random(seed), EVENTS_PER_RUN, ops);
+            events += ops.size();
+
+            if (failure != null) {
+                fail("Seed " + seed + ": " + failure + "\nMinimal repro:\n" + describe(shrink(ops)));
+            }
+        }
+
+        if (requestedEvents != null) {
+            // Everything but the shrinking of a failed run, which never gets here
+            System.out.println(String.format("HeaderCollapseFuzzTest: %d events, %.0f events/s", events,
+                    events / ((System.nanoTime() - start) / 1e9)));
+        }
+    }
+
+    /*
+     * Remove ever smaller chunks of events as long as the run still fails.
+     */
+    private static List<int[]> shrink(List<int[]> ops) {
+        List<int[]> current = new ArrayList<>(ops);
+        for (int chunk = current.size() / 2; chunk >= 1; chunk /= 2) {
+            int from = 0;
+            while (from < current.size()) {
+                List<int[]> candidate = new ArrayList<>(current.subList(0, from));
+                candidate.addAll(current.subList(Math.min(current.size(), from + chunk), current.size()));
+                if (new Run().replay(candidate) != null) {
+                    current = candidate;
+                } else {
+                    from += chunk;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    private static String statusToString(int status) {
+        switch (status) {
+            case HeaderCollapsibleLayout.COLLAPSING:
+                return "COLLAPSING";
+            case HeaderCollapsibleLayout.COLLAPSED:
+                return "COLLAPSED";
+            case HeaderCollapsibleLayout.EXPANDING:
+                return "EXPANDING";
+            case HeaderCollapsibleLayout.EXPANDED:
+                return "EXPANDED";
+            default:
+                return String.valueOf(status);
+        }
+    }
+
+    private static String describe(List<int[]> ops) {
+        StringBuilder sb = new StringBuilder();
+        for (int[] op : ops) {
+            sb.append("    ").append(OP_NAMES[op[0]]);
+            if (op[0] == OP_PROGRAMMATIC) {
+                sb.append(' ').append(PROGRAMMATIC_NAMES[op[1]]);
+            } else if (op[0] != OP_START && op[0] != OP_STOP && op[0] != OP_FRAME) {
+                sb.append(' ').append(op[1]);
+            }
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * A single run on a fresh {@link HeaderFixture}, laid out again after each event.
+     */
+    private static final class Run {
+        private final HeaderFixture mFixture = new HeaderFixture();
+        private final FrameLayout mHeader = mFixture.header;
+        private final HeaderCollapseController mController = mFixture.controller;
+        private final int mTouchSlop = ViewConfiguration.get(mFixture.context).getScaledTouchSlop();
+        private final int[] mConsumed = new int[2];
+        private boolean mInGesture;
+        private int mBodyScrollY;
+
+        Run() {
+            mController.setSupportFlingAction(true);
+            mController.setOvershootDistance(OVERSHOOT_DISTANCE);
+            mFixture.layOutFirst();
+        }
+
+        /*
+         * Pick each event at random, depending on whether a gesture is going on, then perform it.
+         */
+        String generate(Random random, int count, List<int[]> ops) {
+            try {
+                for (int index = 0; index < count; index++) {
+                    final int[] op = nextOp(random);
+                    ops.add(op);
+                    String failure = perform(op);
+                    if (failure != null) {
+                        return failure;
+                    }
+                }
+                return null;
+            } finally {
+                release();
+            }
+        }
+
+        String replay(List<int[]> ops) {
+            try {
+                for (int[] op : ops) {
+                    String failure = perform(op);
+                    if (failure != null) {
+                        return failure;
+                    }
+                }
+                return null;
+            } finally {
+                release();
+            }
+        }
+
+        private int[] nextOp(Random random) {
+            final int roll = random.nextInt(100);
+            if (!mInGesture) {
+                if (roll < 50) {
+                    return new int[]{OP_START, 0};
+                } else if (roll < 90) {
+                    return new int[]{OP_FRAME, 0};
+                }
+                return new int[]{OP_PROGRAMMATIC, random.nextInt(PROGRAMMATIC_NAMES.length)};
+            }
+
+            // Mostly small moves, sometimes a jump far beyond the header
+            final int dy = (random.nextInt(10) == 0 ? random.nextInt(2 * HOST_HEIGHT) - HOST_HEIGHT
+                    : random.nextInt(121) - 60);
+            if (roll < 55) {
+                return new int[]{OP_DRAG, dy};
+            } else if (roll < 65) {
+                return new int[]{OP_PRE_SCROLL, dy};
+            } else if (roll < 72) {
+                return new int[]{OP_SCROLL, dy};
+            } else if (roll < 80) {
+                return new int[]{OP_FLING, random.nextInt(16001) - 8000};
+            } else if (roll < 90) {
+                return new int[]{OP_STOP, 0};
+            } else if (roll < 97) {
+                return new int[]{OP_FRAME, 0};
+            }
+            return new int[]{OP_PROGRAMMATIC, random.nextInt(PROGRAMMATIC_NAMES.length)};
+        }
+
+        /*
+         * Gesture events are dropped out of a gesture, so a shrunk sequence stays a valid one.
+         */
+        private String perform(int[] op) {
+            switch (op[0]) {
+                case OP_START:
+                    if (!mInGesture) {
+                        mInGesture = mController.onStartNestedScroll(View.SCROLL_AXIS_VERTICAL);
+                    }
+                    break;
+                case OP_PRE_SCROLL:
+                    if (mInGesture) {
+                        mController.onNestedPreScroll(0, op[1], mConsumed);
+                    }
+                    break;
+                case OP_SCROLL:
+                    if (mInGesture) {
+                        mController.onNestedScroll(op[1]);
+                    }
+                    break;
+                case OP_DRAG:
+                    if (mInGesture) {
+                        drag(op[1]);
+                    }
+                    break;
+                case OP_FLING:
+                    if (mInGesture) {
+                        mController.onNestedPreFling(0, op[1]);
+                    }
+                    break;
+                case OP_STOP:
+                    if (mInGesture) {
+                        mInGesture = false;
+                        mController.onStopNestedScroll();
+                    }
+                    break;
+                case OP_FRAME:
+                    ShadowLooper.idleMainLooper(FRAME_MS, TimeUnit.MILLISECONDS);
+                    break;
+                case OP_PROGRAMMATIC:
+                default:
+                    programmatic(op[1]);
+                    break;
+            }
+
+            mFixture.layout();
+            return checkInvariants(op);
+        }
+
+        /*
+         * The header takes its part of the delta first, then the body scrolls, and the rest goes back to the header.
+         */
+        private void drag(int dy) {
+            mController.onNestedPreScroll(0, dy, mConsumed);
+            final int remaining = dy - mConsumed[1];
+            final int bodyScrollY = Math.max(0, Math.min(BODY_SCROLL_RANGE, mBodyScrollY + remaining));
+            final int unconsumed = remaining - (bodyScrollY - mBodyScrollY);
+            mBodyScrollY = bodyScrollY;
+            mController.onNestedScroll(unconsumed);
+        }
+
+        private void programmatic(int which) {
+            switch (which) {
+                case 0:
+                    mController.collapse();
+                    break;
+                case 1:
+                    mController.expand();
+                    break;
+                case 2:
+                    mController.smoothCollapse();
+                    break;
+                case 3:
+                default:
+                    mController.smoothExpand();
+                    break;
+            }
+        }
+
+        private String checkInvariants(int[] op) {
+            final int height = mHeader.getHeight();
+            final int sticky = mController.getStickyFooterHeight();
+            if (height < sticky || height > ORG_HEADER_HEIGHT + OVERSHOOT_DISTANCE) {
+                return "header height " + height + " out of [" + sticky + ", "
+                        + (ORG_HEADER_HEIGHT + OVERSHOOT_DISTANCE) + "] after " + OP_NAMES[op[0]];
+            }
+
+            if (mInGesture || mController.hasRunningAnimators()) {
+                return null;  // Not settled yet
+            }
+
+            if (height > ORG_HEADER_HEIGHT) {
+                return "header left overshot at " + height + " after " + OP_NAMES[op[0]];
+            }
+            if (height > sticky + mTouchSlop && height < ORG_HEADER_HEIGHT - mTouchSlop) {
+                return "header left half-open at " + height + " after " + OP_NAMES[op[0]];
+            }
+
+            // At either end the status is that end, in between the header is still on its way to one of them
+            final int status = mController.getCurrentHeaderStatus();
+            final boolean matches;
+            if (status == HeaderCollapsibleLayout.EXPANDED) {
+                matches = height == ORG_HEADER_HEIGHT;
+            } else if (status == HeaderCollapsibleLayout.COLLAPSED) {
+                matches = height == sticky;
+            } else {
+                matches = height > sticky && height < ORG_HEADER_HEIGHT;
+            }
+            if (!matches) {
+                return "status " + statusToString(status) + " does not match header height " + height + " after "
+                        + OP_NAMES[op[0]];
+            }
+
+            return null;
+        }
+
+        /*
+         * Leave nothing scheduled behind for the next fixture.
+         */
+        private void release() {
+            mController.onHostDetached();
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        }
+
+    }
+}
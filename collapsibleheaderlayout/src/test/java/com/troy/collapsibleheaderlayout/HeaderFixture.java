@@ -0,0 +1,99 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.content.Context;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * A {@link HeaderCollapseController} hosted by a plain FrameLayout, measured and laid out synchronously, shared by
+ * the JVM tests. The header is made of a content view and a footer pinned over the bottom of it.
+ * <p>
+ * Configure the controller between the constructor and {@link #layOutFirst()}. The nested scrolling parent does
+ * not take anything, override the {@link HeaderCollapseController.Host} methods to play one.
+ */
+class HeaderFixture implements HeaderCollapseController.Host {
+
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 1920;
+    static final int ORG_HEADER_HEIGHT = 600;
+    static final int FOOTER_HEIGHT = 120;
+
+    final Context context;
+    final FrameLayout host;
+    final FrameLayout header;
+    final View content;
+    final View footer;
+    final HeaderCollapseController controller;
+    int width = WIDTH;
+    int height = HEIGHT;
+    int firstLayouts;
+
+    HeaderFixture() {
+        this(ORG_HEADER_HEIGHT);
+    }
+
+    HeaderFixture(int contentHeight) {
+        context = RuntimeEnvironment.application;
+        host = new FrameLayout(context);
+        header = new FrameLayout(context);
+        host.addView(header, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        content = new View(context);
+        header.addView(content, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, contentHeight));
+        footer = new View(context);
+        header.addView(footer, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, FOOTER_HEIGHT,
+                Gravity.BOTTOM));
+
+        controller = new HeaderCollapseController(context, this);
+    }
+
+    /**
+     * Hand the header to the controller and run the first layout, with the footer pinned.
+     */
+    HeaderFixture layOutFirst() {
+        controller.setHeaderView(header);
+        layout();
+        controller.addPinnedSection(footer, Integer.MAX_VALUE);
+        controller.onHeaderLaidOut();
+        layout();
+        return this;
+    }
+
+    void layout() {
+        controller.onHostMeasure(width, height);
+        host.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        host.layout(0, 0, width, height);
+        controller.onHostLayout();
+    }
+
+    @Override
+    public View getHostView() {
+        return host;
+    }
+
+    @Override
+    public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow) {
+        return false;
+    }
+
+    @Override
+    public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed,
+                                        int[] offsetInWindow) {
+        return false;
+    }
+
+    @Override
+    public boolean dispatchNestedPreFling(float velocityX, float velocityY) {
+        return false;
+    }
+
+    @Override
+    public void onHeaderFirstLayout() {
+        firstLayouts++;
+    }
+}
@@ -0,0 +1,80 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The header follows the window resized for the soft keyboard, and only that resize.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class HeaderImeSyncTest {
+
+    private static final int KEYBOARD_HEIGHT = 800;
+
+    @Test
+    public void keyboardCollapsesAndExpandsBack() {
+        final HeaderFixture fixture = withEditor();
+        fixture.host.getChildAt(1).requestFocus();
+
+        resize(fixture, HeaderFixture.WIDTH, HeaderFixture.HEIGHT - KEYBOARD_HEIGHT);
+        assertStatus(fixture, HeaderCollapsibleLayout.COLLAPSED, HeaderFixture.FOOTER_HEIGHT);
+
+        resize(fixture, HeaderFixture.WIDTH, HeaderFixture.HEIGHT);
+        assertStatus(fixture, HeaderCollapsibleLayout.EXPANDED, HeaderFixture.ORG_HEADER_HEIGHT);
+    }
+
+    @Test
+    public void rotationKeepsTheHeader() {
+        final HeaderFixture fixture = withEditor();
+        fixture.host.getChildAt(1).requestFocus();
+
+        resize(fixture, HeaderFixture.HEIGHT, HeaderFixture.WIDTH);
+
+        assertStatus(fixture, HeaderCollapsibleLayout.EXPANDED, HeaderFixture.ORG_HEADER_HEIGHT);
+    }
+
+    @Test
+    public void shrinkWithoutEditorKeepsTheHeader() {
+        // A multi-window resize, nothing is being typed
+        final HeaderFixture fixture = withEditor();
+        final View plain = new View(fixture.context);
+        plain.setFocusable(true);
+        fixture.host.addView(plain, new FrameLayout.LayoutParams(1, 1));
+        assertTrue(plain.requestFocus());
+
+        resize(fixture, HeaderFixture.WIDTH, HeaderFixture.HEIGHT - KEYBOARD_HEIGHT);
+
+        assertStatus(fixture, HeaderCollapsibleLayout.EXPANDED, HeaderFixture.ORG_HEADER_HEIGHT);
+    }
+
+    private static HeaderFixture withEditor() {
+        final HeaderFixture fixture = new HeaderFixture();
+        fixture.host.addView(new EditText(fixture.context), new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.BOTTOM));
+        fixture.controller.setImeSyncEnabled(true);
+        return fixture.layOutFirst();
+    }
+
+    private static void resize(HeaderFixture fixture, int width, int height) {
+        fixture.width = width;
+        fixture.height = height;
+        fixture.layout();
+    }
+
+    private static void assertStatus(HeaderFixture fixture, int status, int height) {
+        assertEquals(status, fixture.controller.getCurrentHeaderStatus());
+        assertEquals(height, fixture.header.getHeight());
+    }
+}
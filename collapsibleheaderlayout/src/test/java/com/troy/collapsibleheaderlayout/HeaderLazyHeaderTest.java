@@ -0,0 +1,71 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewStub;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A header starting collapsed with a lazy part declared shorter than it really is, which is only known once
+ * inflated on the first expand.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class HeaderLazyHeaderTest {
+
+    private static final int DECLARED_HEIGHT = 400;
+    private static final int INFLATED_HEIGHT = 700;
+
+    @Test
+    public void expandEndsAtTheInflatedHeight() {
+        // Each test inflates its own layout, the heights measured are kept per layout within the process
+        final HeaderFixture fixture = collapsedWithLazyHeader(android.R.layout.simple_list_item_1);
+        assertFalse(fixture.controller.isLazyHeaderInflated());
+
+        fixture.controller.expand();
+        fixture.layout();
+
+        assertTrue(fixture.controller.isLazyHeaderInflated());
+        assertEquals(INFLATED_HEIGHT, fixture.header.getHeight());
+        assertEquals(HeaderCollapsibleLayout.EXPANDED, fixture.controller.getCurrentHeaderStatus());
+    }
+
+    @Test
+    public void smoothExpandEndsAtTheInflatedHeight() {
+        final HeaderFixture fixture = collapsedWithLazyHeader(android.R.layout.simple_list_item_2);
+        final HeaderVirtualClock clock = new HeaderVirtualClock();
+        fixture.controller.setAnimationClock(clock);
+
+        fixture.controller.smoothExpand();
+        clock.runToEnd();
+        fixture.layout();
+
+        assertEquals(INFLATED_HEIGHT, fixture.header.getHeight());
+        assertEquals(HeaderCollapsibleLayout.EXPANDED, fixture.controller.getCurrentHeaderStatus());
+    }
+
+    /*
+     * The inflated view takes the layout params of the stub, so the framework layout ends up that tall.
+     */
+    private static HeaderFixture collapsedWithLazyHeader(int layoutRes) {
+        final HeaderFixture fixture = new HeaderFixture(0);
+        final ViewStub stub = new ViewStub(fixture.context);
+        stub.setId(View.generateViewId());
+        stub.setLayoutResource(layoutRes);
+        fixture.header.addView(stub, 0, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                INFLATED_HEIGHT));
+
+        fixture.controller.setDefaultExpand(false);
+        fixture.controller.setLazyHeader(stub.getId(), DECLARED_HEIGHT, false);
+        return fixture.layOutFirst();
+    }
+}
@@ -0,0 +1,175 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.LifecycleRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Weak and lifecycle bound header status listeners let go of what they reference once their owner is gone.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class HeaderListenerLeakTest {
+
+    private static final int GC_ATTEMPTS = 20;
+
+    @Test
+    public void weakListenerIsCollectedWhileRegistered() {
+        final HeaderFixture header = new HeaderFixture().layOutFirst();
+        final WeakReference<CountingListener> probe = addWeakListener(header.controller);
+
+        assertTrue(isCollected(probe));
+
+        // Dispatching prunes the collected listener on the way
+        header.controller.collapse();
+        header.layout();
+        assertEquals(HeaderCollapsibleLayout.COLLAPSED, header.controller.getCurrentHeaderStatus());
+    }
+
+    @Test
+    public void destroyedOwnerReleasesTheHeader() {
+        final TestOwner owner = new TestOwner();
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_RESUME);
+        final CountingListener listener = new CountingListener();
+        final WeakReference<HeaderCollapseController> probe = addBoundListener(owner, listener);
+        assertEquals(1, owner.registry.getObserverCount());
+
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+
+        assertEquals(0, owner.registry.getObserverCount());
+        assertTrue(isCollected(probe));
+    }
+
+    @Test
+    public void destroyedOwnerStopsTheCallbacks() {
+        final HeaderFixture header = new HeaderFixture().layOutFirst();
+        final TestOwner owner = new TestOwner();
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_RESUME);
+        final CountingListener listener = new CountingListener();
+        header.controller.addOnHeaderStatusChangedListener(owner, listener);
+        final HeaderVirtualClock clock = new HeaderVirtualClock();
+        header.controller.setAnimationClock(clock);
+
+        // collapse() and expand() change the status without any callback, the animations do call back
+        header.controller.smoothCollapse();
+        clock.runToEnd();
+        final int callbacks = listener.callbacks;
+        assertTrue(callbacks > 0);
+
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+        header.controller.smoothExpand();
+        clock.runToEnd();
+
+        assertEquals(callbacks, listener.callbacks);
+    }
+
+    @Test
+    public void detachedHeaderUnbindsFromALivingOwner() {
+        // A Fragment outliving its views
+        final TestOwner owner = new TestOwner();
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_RESUME);
+        final CountingListener listener = new CountingListener();
+        final WeakReference<HeaderCollapseController> probe = addBoundListenerAndDetach(owner, listener);
+
+        assertEquals(0, owner.registry.getObserverCount());
+        assertEquals(Lifecycle.State.RESUMED, owner.registry.getCurrentState());
+        assertTrue(isCollected(probe));
+    }
+
+    @Test
+    public void destroyedOwnerIgnoresNewListeners() {
+        final HeaderFixture header = new HeaderFixture().layOutFirst();
+        final TestOwner owner = new TestOwner();
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_CREATE);
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+        final CountingListener listener = new CountingListener();
+
+        header.controller.addOnHeaderStatusChangedListener(owner, listener);
+        header.controller.collapse();
+        header.layout();
+
+        assertEquals(0, owner.registry.getObserverCount());
+        assertEquals(0, listener.callbacks);
+    }
+
+    /*
+     * Kept out of the test methods, so that no local keeps the listener reachable.
+     */
+    private static WeakReference<CountingListener> addWeakListener(HeaderCollapseController controller) {
+        final CountingListener listener = new CountingListener();
+        controller.addOnHeaderStatusChangedListener(listener, true);
+        return new WeakReference<>(listener);
+    }
+
+    private static WeakReference<HeaderCollapseController> addBoundListener(LifecycleOwner owner,
+                                                                             CountingListener listener) {
+        final HeaderFixture header = new HeaderFixture().layOutFirst();
+        header.controller.addOnHeaderStatusChangedListener(owner, listener);
+        return new WeakReference<>(header.controller);
+    }
+
+    private static WeakReference<HeaderCollapseController> addBoundListenerAndDetach(LifecycleOwner owner,
+                                                                                      CountingListener listener) {
+        final HeaderFixture header = new HeaderFixture().layOutFirst();
+        header.controller.addOnHeaderStatusChangedListener(owner, listener);
+        header.controller.onHostDetached();
+        return new WeakReference<>(header.controller);
+    }
+
+    private static boolean isCollected(WeakReference<?> probe) {
+        for (int attempt = 0; attempt < GC_ATTEMPTS && probe.get() != null; attempt++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return probe.get() == null;
+    }
+
+    private static final class TestOwner implements LifecycleOwner {
+        final LifecycleRegistry registry = new LifecycleRegistry(this);
+
+        @Override
+        public Lifecycle getLifecycle() {
+            return registry;
+        }
+    }
+
+    private static final class CountingListener implements OnHeaderStatusChangedListener {
+        int callbacks;
+
+        @Override
+        public void onHeaderStartCollapsing() {
+            callbacks++;
+        }
+
+        @Override
+        public void onHeaderCollapsed() {
+            callbacks++;
+        }
+
+        @Override
+        public void onHeaderStartExpanding() {
+            callbacks++;
+        }
+
+        @Override
+        public void onHeaderExpanded() {
+            callbacks++;
+        }
+
+        @Override
+        public void onHeaderOffsetChanged(int verticalOffset, int headerHeight, float headerCollapsedPercentage,
+                                          boolean isScrollingDown) {
+            callbacks++;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Three-level nested scroll chains: the scrolling body, the header, and an outer scrolling parent the header is
+ * nested in. The test plays the body, the host plays the outer parent, and the consumed and unconsumed parts are
+ * checked at each level.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class HeaderNestedScrollChainTest {
+
+    private static final int ORG_HEADER_HEIGHT = HeaderFixture.ORG_HEADER_HEIGHT;
+    private static final int FOOTER_HEIGHT = HeaderFixture.FOOTER_HEIGHT;
+
+    private OuterParent mFixture;
+    private HeaderCollapseController mController;
+    private final int[] mConsumed = new int[2];
+    private final int[] mOffsetInWindow = new int[2];
+
+    @Before
+    public void setUp() {
+        mFixture = new OuterParent();
+        mFixture.layOutFirst();
+        mController = mFixture.controller;
+    }
+
+    @Test
+    public void parentFirstLeavesTheHeaderWhatTheParentDidNotTake() {
+        mFixture.preScrollBudget = 10;
+
+        preScroll(30);
+
+        assertEquals(30, mFixture.offeredDy);
+        assertEquals(30, mConsumed[1]);
+        assertEquals(ORG_HEADER_HEIGHT - 20, mController.getPendingHeaderHeight());
+    }
+
+    @Test
+    public void selfFirstPassesTheRestAtTheEdgeToTheParent() {
+        mController.setNestedScrollChainingPolicy(HeaderCollapsibleLayout.CHAIN_SELF_FIRST);
+        bindHeight(FOOTER_HEIGHT + 15);
+        mFixture.preScrollBudget = Integer.MAX_VALUE;
+
+        preScroll(40);
+
+        assertEquals(25, mFixture.offeredDy);
+        assertEquals(40, mConsumed[1]);
+        assertEquals(FOOTER_HEIGHT, mController.getPendingHeaderHeight());
+    }
+
+    @Test
+    public void selfFirstAtTheEdgeLeavesTheUnconsumedPartToTheBody() {
+        mController.setNestedScrollChainingPolicy(HeaderCollapsibleLayout.CHAIN_SELF_FIRST);
+        bindHeight(FOOTER_HEIGHT + 15);
+
+        preScroll(40);
+
+        assertEquals(25, mFixture.offeredDy);
+        assertEquals(15, mConsumed[1]);
+    }
+
+    @Test
+    public void splitLetsTheParentExpandFirstThenTheHeaderTakesTheBodyLeftover() {
+        mController.setNestedScrollChainingPolicy(HeaderCollapsibleLayout.CHAIN_SPLIT);
+        bindHeight(400);
+        mFixture.preScrollBudget = 10;
+
+        preScroll(-30);
+
+        assertEquals(-30, mFixture.offeredDy);
+        assertEquals(-10, mConsumed[1]);
+        assertEquals(400, mController.getPendingHeaderHeight());
+
+        // The body is at its top and leaves the rest
+        mController.onNestedScroll(-20);
+
+        assertEquals(420, mController.getPendingHeaderHeight());
+        assertEquals(-20, mFixture.dyConsumed);
+        assertEquals(0, mFixture.dyUnconsumed);
+    }
+
+    @Test
+    public void headerDoesNotClaimDeltasBeforeTheDragStarts() {
+        preScroll(3);
+
+        assertEquals(0, mConsumed[1]);
+        assertEquals(ORG_HEADER_HEIGHT, mController.getPendingHeaderHeight());
+    }
+
+    @Test
+    public void expandedHeaderPassesTheBodyLeftoverOnToTheParent() {
+        preScroll(-30);
+        mController.onNestedScroll(-30);
+
+        assertEquals(0, mFixture.dyConsumed);
+        assertEquals(-30, mFixture.dyUnconsumed);
+        assertEquals(ORG_HEADER_HEIGHT, mController.getPendingHeaderHeight());
+    }
+
+    @Test
+    public void parentMovingTheHostIsReportedInTheWindowOffset() {
+        mController.setNestedScrollChainingPolicy(HeaderCollapsibleLayout.CHAIN_SELF_FIRST);
+        bindHeight(FOOTER_HEIGHT + 15);
+        mFixture.preScrollBudget = 10;
+
+        // The parent takes 10 of the 25 the header leaves, and scrolls the host up by as much
+        preScroll(40);
+
+        assertEquals(25, mConsumed[1]);
+        assertEquals(-10, mOffsetInWindow[1]);
+
+        // Collapsed, all of the body leftover moves the parent, a new event starts from no offset
+        mController.onNestedScroll(200, mOffsetInWindow);
+
+        assertEquals(-200, mOffsetInWindow[1]);
+    }
+
+    @Test
+    public void disabledCollapseOvershootConsumesOnlyWhatMovedTheHost() {
+        // With collapsing disabled the overshoot scrolls the whole host
+        mController.disableCollapsing();
+        mController.setOvershootDistance(50);
+        mController.onStartNestedScroll(View.SCROLL_AXIS_VERTICAL);
+
+        // Damped to a third, the whole delta moved the host
+        mController.onNestedScroll(-30, mOffsetInWindow);
+
+        assertEquals(-10, mFixture.host.getScrollY());
+        assertEquals(-30, mFixture.dyConsumed);
+        assertEquals(0, mFixture.dyUnconsumed);
+        assertEquals(0, mOffsetInWindow[1]);
+
+        // Only 120 of the delta take the host to the overshoot distance, the parent moves with the rest
+        mController.onNestedScroll(-300, mOffsetInWindow);
+
+        assertEquals(-50, mFixture.host.getScrollY());
+        assertEquals(-120, mFixture.dyConsumed);
+        assertEquals(-180, mFixture.dyUnconsumed);
+        assertEquals(180, mOffsetInWindow[1]);
+    }
+
+    private void preScroll(int dy) {
+        mController.onStartNestedScroll(View.SCROLL_AXIS_VERTICAL);
+        mController.onNestedPreScroll(0, dy, mConsumed, mOffsetInWindow);
+    }
+
+    private void bindHeight(int height) {
+        final int offset = ORG_HEADER_HEIGHT - height;
+        mController.bind(offset, HeaderCollapsibleLayout.COLLAPSING, false);
+        mFixture.layout();
+    }
+
+    /**
+     * Takes up to its budget of each pre-scroll and all of the unconsumed scrolls, scrolling the host in the window
+     * by as much, and records what it is offered.
+     */
+    private static final class OuterParent extends HeaderFixture {
+        int preScrollBudget;
+        int offeredDy;
+        int dyConsumed;
+        int dyUnconsumed;
+
+        @Override
+        public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow) {
+            offeredDy = dy;
+            consumed[0] = 0;
+            consumed[1] = dy > 0 ? Math.min(dy, preScrollBudget) : Math.max(dy, -preScrollBudget);
+            moveHost(offsetInWindow, consumed[1]);
+            return consumed[1] != 0;
+        }
+
+        @Override
+        public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed,
+                                            int[] offsetInWindow) {
+            this.dyConsumed = dyConsumed;
+            this.dyUnconsumed = dyUnconsumed;
+            moveHost(offsetInWindow, dyUnconsumed);
+            return true;
+        }
+
+        private static void moveHost(int[] offsetInWindow, int scrolledDy) {
+            if (offsetInWindow != null) {
+                offsetInWindow[0] = 0;
+                offsetInWindow[1] = -scrolledDy;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.troy.collapsibleheaderlayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Binding a header reused from a pool, with {@link HeaderCollapseController#recycle()} and
+ * {@link HeaderCollapseController#bind(int, int, boolean)}, the way a RecyclerView item holding a header would.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class HeaderRebindTest {
+
+    private static final int ORG_HEADER_HEIGHT = 400;
+    private static final int CHANGED_HEADER_HEIGHT = 500;
+    private static final int FOOTER_HEIGHT = HeaderFixture.FOOTER_HEIGHT;
+    private static final int POOL_SIZE = 8;
+    private static final int BINDS = 48;
+
+    @Test
+    public void reusedBindSkipsTheFirstLayout() {
+        final Item[] pool = new Item[POOL_SIZE];
+        for (int index = 0; index < POOL_SIZE; index++) {
+            pool[index] = new Item();
+        }
+
+        // The first layout measures the header from scratch, a reused item only goes through its own
+        assertEquals(POOL_SIZE, bindReused(pool, BINDS));
+        assertEquals(BINDS, rebuild(BINDS));
+    }
+
+    @Test
+    public void bindKeepsTheMeasurementsOfTheSameContent() {
+        final Item item = new Item();
+        item.content.getLayoutParams().height = CHANGED_HEADER_HEIGHT;
+
+        item.controller.recycle();
+        item.controller.bind(0, HeaderCollapsibleLayout.EXPANDED, false);
+        item.layout();
+        item.controller.onHeaderLaidOut();
+
+        assertEquals(1, item.firstLayouts);
+        assertEquals(ORG_HEADER_HEIGHT, item.header.getHeight());
+    }
+
+    @Test
+    public void bindMeasuresChangedContentAgain() {
+        final Item item = new Item();
+        item.content.getLayoutParams().height = CHANGED_HEADER_HEIGHT;
+
+        item.controller.recycle();
+        item.controller.bind(0, HeaderCollapsibleLayout.EXPANDED, true);
+        item.layout();
+        item.controller.onHeaderLaidOut();
+        item.layout();
+
+        assertEquals(2, item.firstLayouts);
+        assertEquals(CHANGED_HEADER_HEIGHT, item.header.getHeight());
+        assertEquals(HeaderCollapsibleLayout.EXPANDED, item.controller.getCurrentHeaderStatus());
+    }
+
+    @Test
+    public void resetRequestsTheLayoutOfTheExpandedHeader() {
+        final Item item = new Item();
+        item.controller.collapse();
+        item.layout();
+
+        item.controller.reset();
+        assertTrue(item.host.isLayoutRequested());
+        item.layout();
+
+        assertEquals(ORG_HEADER_HEIGHT, item.header.getHeight());
+        assertEquals(HeaderCollapsibleLayout.EXPANDED, item.controller.getCurrentHeaderStatus());
+    }
+
+    /*
+     * @return the first layouts run by the pool in total
+     */
+    private static int bindReused(Item[] pool, int binds) {
+        for (int bind = 0; bind < binds; bind++) {
+            final Item item = pool[bind % POOL_SIZE];
+            final int offset = offsetOf(bind);
+            item.controller.recycle();
+            item.controller.bind(offset, statusOf(offset), false);
+            item.layout();
+
+            assertEquals(ORG_HEADER_HEIGHT - offset, item.header.getHeight());
+        }
+
+        int firstLayouts = 0;
+        for (Item item : pool) {
+            firstLayouts += item.firstLayouts;
+        }
+        return firstLayouts;
+    }
+
+    /*
+     * @return the first layouts run by the items built in total
+     */
+    private static int rebuild(int binds) {
+        int firstLayouts = 0;
+        for (int bind = 0; bind < binds; bind++) {
+            final Item item = new Item();
+            final int offset = offsetOf(bind);
+            item.controller.bind(offset, statusOf(offset), false);
+            item.layout();
+
+            assertEquals(ORG_HEADER_HEIGHT - offset, item.header.getHeight());
+            firstLayouts += item.firstLayouts;
+            item.controller.onHostDetached();
+        }
+        return firstLayouts;
+    }
+
+    /*
+     * Every third item collapsed, every third expanded, the others half way.
+     */
+    private static int offsetOf(int bind) {
+        return (bind % 3) * (ORG_HEADER_HEIGHT - FOOTER_HEIGHT) / 2;
+    }
+
+    private static int statusOf(int offset) {
+        if (offset == 0) {
+            return HeaderCollapsibleLayout.EXPANDED;
+        }
+        return offset == ORG_HEADER_HEIGHT - FOOTER_HEIGHT ? HeaderCollapsibleLayout.COLLAPSED
+                : HeaderCollapsibleLayout.COLLAPSING;
+    }
+
+    /**
+     * An item view laid out as soon as it is built. The fixture constants are inherited, name the ones of the test.
+     */
+    private static final class Item extends HeaderFixture {
+        Item() {
+            super(HeaderRebindTest.ORG_HEADER_HEIGHT);
+            layOutFirst();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.troy.collapsibleheaderlayout;
+
+import android.support.test.espresso.IdlingResource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the header animations with a {@link HeaderVirtualClock}, and checks that {@link HeaderIdlingResource}
+ * reports them.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class HeaderVirtualClockTest {
+
+    private static final int ORG_HEADER_HEIGHT = HeaderFixture.ORG_HEADER_HEIGHT;
+    private static final int FOOTER_HEIGHT = HeaderFixture.FOOTER_HEIGHT;
+
+    private HeaderCollapseController mController;
+    private HeaderVirtualClock mClock;
+    private HeaderIdlingResource mIdlingResource;
+    private int mIdleTransitions;
+
+    @Before
+    public void setUp() {
+        mController = new HeaderFixture().layOutFirst().controller;
+
+        mClock = new HeaderVirtualClock();
+        mController.setAnimationClock(mClock);
+        mIdlingResource = new HeaderIdlingResource(mController, "header");
+        mIdlingResource.registerIdleTransitionCallback(new IdlingResource.ResourceCallback() {
+            @Override
+            public void onTransitionToIdle() {
+                mIdleTransitions++;
+            }
+        });
+    }
+
+    @Test
+    public void advancingTheClockMovesTheHeader() {
+        mController.smoothCollapse();
+        assertFalse(mIdlingResource.isIdleNow());
+        assertTrue(mClock.hasRunningAnimations());
+
+        mClock.advanceBy(100L);
+        final int height = mController.getPendingHeaderHeight();
+        assertTrue("height " + height, height > FOOTER_HEIGHT && height < ORG_HEADER_HEIGHT);
+        assertFalse(mIdlingResource.isIdleNow());
+        assertEquals(0, mIdleTransitions);
+
+        mClock.advanceBy(1000L);
+        assertEquals(FOOTER_HEIGHT, mController.getPendingHeaderHeight());
+        assertEquals(HeaderCollapsibleLayout.COLLAPSED, mController.getCurrentHeaderStatus());
+        assertFalse(mClock.hasRunningAnimations());
+        assertTrue(mIdlingResource.isIdleNow());
+        assertEquals(1, mIdleTransitions);
+    }
+
+    @Test
+    public void runToEndSettlesRightAway() {
+        mController.smoothCollapse();
+        mClock.runToEnd();
+
+        assertEquals(FOOTER_HEIGHT, mController.getPendingHeaderHeight());
+        assertEquals(HeaderCollapsibleLayout.COLLAPSED, mController.getCurrentHeaderStatus());
+        assertTrue(mIdlingResource.isIdleNow());
+        assertEquals(1, mIdleTransitions);
+    }
+
+    @Test
+    public void recyclingDropsTheDrivenAnimations() {
+        mController.smoothCollapse();
+        mController.recycle();
+
+        assertFalse(mClock.hasRunningAnimations());
+        assertTrue(mIdlingResource.isIdleNow());
+        assertEquals(1, mIdleTransitions);
+
+        mIdlingResource.release();
+        mController.smoothExpand();
+        mClock.runToEnd();
+        assertEquals(1, mIdleTransitions);
+    }
+}